@@ -0,0 +1,73 @@
+package com.backtestingbuddy.ingestionengine.benchmark;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import yahoofinance.histquotes.HistoricalQuote;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap cost of holding one symbol's bars as a {@code List<HistoricalQuote>} versus a {@link BarSeries}.
+ * <p>
+ * Run under the gc profiler (enabled in build.gradle). Each benchmark returns everything it allocates, so
+ * {@code gc.alloc.rate.norm} is the heap the returned bars retain; divide it by {@code bars} for bytes per bar.
+ * The prices are precomputed, so only the holders themselves are counted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BarSeriesAllocationBenchmark {
+
+    @Param({"1250"})
+    private int bars;
+
+    private long[] epochMillis;
+    private double[] closes;
+
+    @Setup
+    public void setUp() {
+        epochMillis = new long[bars];
+        closes = new double[bars];
+        long firstDay = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(bars);
+        double price = 100.0;
+        for (int b = 0; b < bars; b++) {
+            price *= 1.0 + ((b * 31) % 21 - 10) / 1000.0;
+            epochMillis[b] = firstDay + TimeUnit.DAYS.toMillis(b);
+            closes[b] = price;
+        }
+    }
+
+    @Benchmark
+    public List<HistoricalQuote> historicalQuotes() {
+        List<HistoricalQuote> quotes = new ArrayList<>(bars);
+        for (int b = 0; b < bars; b++) {
+            Calendar date = Calendar.getInstance();
+            date.setTimeInMillis(epochMillis[b]);
+            BigDecimal close = BigDecimal.valueOf(closes[b]).setScale(6, RoundingMode.HALF_UP);
+            quotes.add(new HistoricalQuote("AAPL", date, close, close, close, close, close, 1_000_000L + b));
+        }
+        return quotes;
+    }
+
+    @Benchmark
+    public BarSeries barSeries() {
+        BarSeries series = new BarSeries("AAPL", bars);
+        for (int b = 0; b < bars; b++) {
+            long close = Math.round(closes[b] * BarSeries.PRICE_MULTIPLIER);
+            series.add(epochMillis[b], close, close, close, close, close, 1_000_000L + b);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,74 @@
+package com.backtestingbuddy.ingestionengine.benchmark;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseRowBinaryWriter;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseService;
+import com.backtestingbuddy.ingestionengine.service.RowBinaryEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import yahoofinance.histquotes.HistoricalQuote;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-symbol conversion costs on the persist path: library quotes to {@link BarSeries}, and a series to JDBC
+ * batch parameters (what {@code saveHistoricalData} builds in jdbc mode) or to a RowBinary body.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConversionBenchmark {
+
+    @Param({"1250"})
+    private int bars;
+
+    private List<HistoricalQuote> quotes;
+    private BarSeries series;
+    private RowBinaryEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        quotes = new ArrayList<>(bars);
+        double price = 100.0;
+        for (int b = 0; b < bars; b++) {
+            Calendar date = Calendar.getInstance();
+            date.add(Calendar.DAY_OF_YEAR, b - bars);
+            price *= 1.0 + ((b * 31) % 21 - 10) / 1000.0;
+            BigDecimal close = BigDecimal.valueOf(price).setScale(6, RoundingMode.HALF_UP);
+            quotes.add(new HistoricalQuote("AAPL", date, close, close, close, close, close, 1_000_000L + b));
+        }
+        series = BarSeries.fromHistoricalQuotes("AAPL", quotes);
+        encoder = new RowBinaryEncoder(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public BarSeries historicalQuotesToBarSeries() {
+        return BarSeries.fromHistoricalQuotes("AAPL", quotes);
+    }
+
+    @Benchmark
+    public List<Object[]> barSeriesToJdbcBatch() {
+        return ClickHouseService.buildHistoricalRows(series);
+    }
+
+    @Benchmark
+    public void barSeriesToRowBinary(Blackhole blackhole) throws IOException {
+        ClickHouseRowBinaryWriter.encodeBarSeries(encoder, series);
+        encoder.flush();
+        blackhole.consume(encoder.getBytesWritten());
+    }
+}
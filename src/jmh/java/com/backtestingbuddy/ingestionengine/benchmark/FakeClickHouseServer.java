@@ -0,0 +1,72 @@
+package com.backtestingbuddy.ingestionengine.benchmark;
+
+import com.clickhouse.jdbc.ClickHouseDataSource;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal stand-in for ClickHouse's HTTP interface: accepts any query, reads and discards the request body
+ * and answers with an empty result. Lets benchmarks exercise the real client and insert path without a server.
+ */
+public class FakeClickHouseServer implements AutoCloseable {
+
+    private static final String SUMMARY = "{\"read_rows\":\"0\",\"read_bytes\":\"0\",\"written_rows\":\"0\",\"written_bytes\":\"0\",\"total_rows_to_read\":\"0\"}";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    public FakeClickHouseServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * A JDBC data source for this server. The server version and time zone are given up front, so the driver
+     * does not query them from a server that answers every query with an empty result.
+     */
+    public ClickHouseDataSource newDataSource() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("server_version", "23.8");
+        props.setProperty("server_time_zone", "UTC");
+        return new ClickHouseDataSource("jdbc:clickhouse://127.0.0.1:" + getPort() + "/default", props);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream body = exchange.getRequestBody()) {
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                bytesReceived.addAndGet(read);
+            }
+        }
+        exchange.getResponseHeaders().add("X-ClickHouse-Summary", SUMMARY);
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package com.backtestingbuddy.ingestionengine.benchmark;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseRowBinaryWriter;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseService;
+import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseNode;
+import com.clickhouse.client.ClickHouseNodeSelector;
+import com.clickhouse.client.ClickHouseProtocol;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Historical inserts of one batch of symbols through each write mode: JDBC batch parameters (what
+ * {@code clickhouse.insert.mode=jdbc} sends), RowBinary, and RowBinary with LZ4. The real ClickHouse client
+ * and driver write to a {@link FakeClickHouseServer}, so this measures client-side cost and bytes on the
+ * wire, not server-side insert time.
+ * <p>
+ * Next to the time per batch, the {@code bytesSent} and {@code rowsSent} counters give the request bytes
+ * received by the server; divide them by each other for bytes per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InsertPathBenchmark {
+
+    private static final String TABLE = "stock_historical_data";
+
+    @Param({"jdbc", "rowbinary", "rowbinary-lz4"})
+    private String mode;
+
+    @Param({"200"})
+    private int symbols;
+
+    @Param({"1250"})
+    private int bars;
+
+    private FakeClickHouseServer server;
+    private ClickHouseClient client;
+    private JdbcTemplate jdbc;
+    private ClickHouseRowBinaryWriter writer;
+    private List<BarSeries> batch;
+    private long rows;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new FakeClickHouseServer();
+        client = ClickHouseClient.builder()
+                .nodeSelector(ClickHouseNodeSelector.of(ClickHouseProtocol.HTTP))
+                .build();
+        ClickHouseNode node = ClickHouseNode.builder()
+                .host("127.0.0.1")
+                .port(ClickHouseProtocol.HTTP, server.getPort())
+                .database("default")
+                .build();
+        jdbc = new JdbcTemplate(server.newDataSource());
+        writer = new ClickHouseRowBinaryWriter(client, node, mode.equals("rowbinary-lz4"));
+        batch = syntheticSeries(symbols, bars);
+        rows = (long) symbols * bars;
+    }
+
+    @Benchmark
+    public void insert(Traffic traffic) throws Exception {
+        long before = server.getBytesReceived();
+        if (mode.equals("jdbc")) {
+            List<Object[]> batchArgs = new ArrayList<>((int) rows);
+            for (BarSeries series : batch) {
+                batchArgs.addAll(ClickHouseService.buildHistoricalRows(series));
+            }
+            jdbc.batchUpdate(ClickHouseService.INSERT_HISTORICAL_DATA_SQL, batchArgs);
+        } else {
+            writer.insertHistoricalData(TABLE, batch);
+        }
+        traffic.bytesSent += server.getBytesReceived() - before;
+        traffic.rowsSent += rows;
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    static List<BarSeries> syntheticSeries(int symbols, int bars) {
+        List<BarSeries> seriesList = new ArrayList<>(symbols);
+        long firstDay = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(bars);
+        for (int s = 0; s < symbols; s++) {
+            BarSeries series = new BarSeries("SYM" + s, bars);
+            double price = 100.0 + s;
+            for (int b = 0; b < bars; b++) {
+                price *= 1.0 + ((b * 31 + s) % 21 - 10) / 1000.0;
+                long close = Math.round(price * BarSeries.PRICE_MULTIPLIER);
+                series.add(firstDay + TimeUnit.DAYS.toMillis(b), close, close + close / 100, close - close / 100, close, close, 1_000_000L + b);
+            }
+            seriesList.add(series);
+        }
+        return seriesList;
+    }
+
+    /**
+     * Bytes and rows sent per iteration, reported by JMH next to the timings.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Traffic {
+
+        public long bytesSent;
+        public long rowsSent;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesSent = 0;
+            rowsSent = 0;
+        }
+    }
+}
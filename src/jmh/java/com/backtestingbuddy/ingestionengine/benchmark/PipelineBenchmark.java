@@ -0,0 +1,143 @@
+package com.backtestingbuddy.ingestionengine.benchmark;
+
+import com.backtestingbuddy.ingestionengine.dto.BulkIngestionResult;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseRowBinaryWriter;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseService;
+import com.backtestingbuddy.ingestionengine.service.FetchedSymbolData;
+import com.backtestingbuddy.ingestionengine.service.IngestionPipeline;
+import com.backtestingbuddy.ingestionengine.service.StubYahooChartServer;
+import com.backtestingbuddy.ingestionengine.service.YahooChartHttpProvider;
+import com.backtestingbuddy.ingestionengine.service.YahooRequestScheduler;
+import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseNode;
+import com.clickhouse.client.ClickHouseNodeSelector;
+import com.clickhouse.client.ClickHouseProtocol;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import yahoofinance.histquotes.Interval;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end fetch and persist for a batch of symbols: the async chart client against {@link StubYahooChartServer},
+ * the {@link IngestionPipeline}, and {@link ClickHouseService}'s write-behind buffer flushing RowBinary inserts
+ * through the real ClickHouse client into a {@link FakeClickHouseServer}. The scheduler and the service are
+ * created by a Spring context from benchmark properties, as the application configures them. Rate limiting is
+ * effectively off, so this measures the service's own overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PipelineBenchmark {
+
+    @Param({"100"})
+    private int symbolCount;
+
+    @Param({"5"})
+    private int years;
+
+    private StubYahooChartServer chartServer;
+    private FakeClickHouseServer clickHouseServer;
+    private YahooRequestScheduler scheduler;
+    private YahooChartHttpProvider provider;
+    private ClickHouseClient client;
+    private AnnotationConfigApplicationContext context;
+    private ClickHouseService clickHouseService;
+    private IngestionPipeline pipeline;
+    private List<String> symbols;
+    private Instant from;
+    private Instant to;
+
+    @Setup
+    public void setUp() throws Exception {
+        chartServer = new StubYahooChartServer();
+        clickHouseServer = new FakeClickHouseServer();
+
+        client = ClickHouseClient.builder()
+                .nodeSelector(ClickHouseNodeSelector.of(ClickHouseProtocol.HTTP))
+                .build();
+        ClickHouseNode node = ClickHouseNode.builder()
+                .host("127.0.0.1")
+                .port(ClickHouseProtocol.HTTP, clickHouseServer.getPort())
+                .database("default")
+                .build();
+        ClickHouseRowBinaryWriter writer = new ClickHouseRowBinaryWriter(client, node, false);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "yahoo.finance.rate.requests-per-second", "1000000",
+                "yahoo.finance.rate.burst", "1000",
+                "yahoo.finance.concurrency.initial", "32",
+                "yahoo.finance.concurrency.max", "32",
+                "yahoo.finance.retry.max-attempts", "0",
+                "clickhouse.insert.mode", "rowbinary")));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.registerBean(ClickHouseRowBinaryWriter.class, () -> writer);
+        DataSource dataSource = clickHouseServer.newDataSource();
+        context.registerBean(JdbcTemplate.class, () -> new SchemaSkippingJdbcTemplate(dataSource));
+        context.register(YahooRequestScheduler.class, ClickHouseService.class);
+        context.refresh();
+        scheduler = context.getBean(YahooRequestScheduler.class);
+        clickHouseService = context.getBean(ClickHouseService.class);
+        provider = new YahooChartHttpProvider(scheduler, chartServer.getBaseUrl(), 32, 1_000, 30_000);
+
+        pipeline = new IngestionPipeline(32, 4, 64);
+
+        symbols = new ArrayList<>(symbolCount);
+        for (int i = 0; i < symbolCount; i++) {
+            symbols.add("SYM" + i);
+        }
+        to = Instant.now().truncatedTo(ChronoUnit.DAYS);
+        from = to.minus(365L * years, ChronoUnit.DAYS);
+    }
+
+    @Benchmark
+    public BulkIngestionResult fetchAndPersist() {
+        return pipeline.run(symbols,
+                symbol -> provider.fetchHistoricalBars(symbol, from, to, Interval.DAILY)
+                        .thenApply(bars -> new FetchedSymbolData(symbol, null, bars)),
+                data -> clickHouseService.saveHistoricalBarsAsync(data.getHistoricalBars()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.close();
+        provider.close();
+        context.close(); // Drains the write buffers and stops the scheduler
+        client.close();
+        clickHouseServer.close();
+        chartServer.close();
+    }
+
+    /**
+     * The tables are not part of the measured path; their DDL is skipped instead of sent to the fake server.
+     */
+    private static final class SchemaSkippingJdbcTemplate extends JdbcTemplate {
+
+        private SchemaSkippingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public void execute(String sql) {
+        }
+    }
+}
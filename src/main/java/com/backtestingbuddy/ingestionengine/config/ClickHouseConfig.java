@@ -1,18 +1,39 @@
 package com.backtestingbuddy.ingestionengine.config;
 
 import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseBarExporter;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseRowBinaryWriter;
+import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseNodeSelector;
+import com.clickhouse.client.ClickHouseNodes;
+import com.clickhouse.client.ClickHouseProtocol;
+import com.clickhouse.client.config.ClickHouseClientOption;
+import com.clickhouse.client.http.config.ClickHouseHttpOption;
+import com.clickhouse.client.http.config.HttpConnectionProvider;
 import com.clickhouse.jdbc.ClickHouseDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
+import java.net.URI;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 @Configuration
 public class ClickHouseConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(ClickHouseConfig.class);
+
     @Value("${clickhouse.datasource.url}")
     private String clickhouseUrl;
 
@@ -22,22 +43,194 @@ public class ClickHouseConfig {
     @Value("${clickhouse.datasource.password:}") // Default to empty if not set
     private String clickhousePassword;
 
-    @Bean
-    public DataSource clickHouseDataSource() throws SQLException {
+    @Value("${clickhouse.insert.lz4-compression:true}") // Compress RowBinary insert bodies with LZ4
+    private boolean insertLz4Compression;
+
+    @Value("${clickhouse.export.lz4-compression:true}") // Have the server LZ4-compress export responses
+    private boolean exportLz4Compression;
+
+    // Replicas as host:port; when empty, the host of clickhouse.datasource.url is the only endpoint
+    @Value("${clickhouse.endpoints:}")
+    private List<String> endpoints;
+
+    // firstAlive, random or roundRobin. Spreading requests only makes sense over Replicated* tables: with plain
+    // MergeTree tables each server holds just the rows written to it, so the default only fails over
+    @Value("${clickhouse.load-balancing-policy:firstAlive}")
+    private String loadBalancingPolicy;
+
+    @Value("${clickhouse.health-check-interval-ms:10000}")
+    private long healthCheckIntervalMs;
+
+    @Value("${clickhouse.failover-attempts:2}") // Other endpoints tried after a connection failure
+    private int failoverAttempts;
+
+    @Value("${clickhouse.pool.max-size:16}")
+    private int poolMaxSize;
+
+    @Value("${clickhouse.pool.min-idle:2}")
+    private int poolMinIdle;
+
+    @Value("${clickhouse.pool.acquire-timeout-ms:10000}") // Max wait for a free pooled connection
+    private long poolAcquireTimeoutMs;
+
+    @Value("${clickhouse.pool.idle-timeout-ms:600000}")
+    private long poolIdleTimeoutMs;
+
+    @Value("${clickhouse.pool.max-lifetime-ms:1800000}")
+    private long poolMaxLifetimeMs;
+
+    @Value("${clickhouse.timeout.connect-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${clickhouse.timeout.socket-ms:60000}") // Max silence on an open connection, e.g. a stalled insert
+    private int socketTimeoutMs;
+
+    @Value("${clickhouse.timeout.query-seconds:300}") // Server-side max_execution_time and JDBC query timeout
+    private int queryTimeoutSeconds;
+
+    /**
+     * Pooled JDBC connections. Connections are only a thin handle over the driver's shared, keep-alive
+     * Apache HTTP client, so the pool mainly bounds concurrency: a saturated pool makes callers wait up to
+     * {@code clickhouse.pool.acquire-timeout-ms} instead of piling more requests onto the server.
+     */
+    @Bean(destroyMethod = "close")
+    public DataSource clickHouseDataSource(MeterRegistry meterRegistry) throws SQLException {
         Properties props = new Properties();
         props.setProperty("user", clickhouseUsername);
         if (clickhousePassword != null && !clickhousePassword.isEmpty()) {
             props.setProperty("password", clickhousePassword);
         }
         // It is generally recommended to set ssl to true for production
-        // props.setProperty("ssl", "true"); 
+        // props.setProperty("ssl", "true");
         // props.setProperty("sslmode", "strict"); // or "none" if not using SSL
+        props.putAll(connectionOptions());
 
-        return new ClickHouseDataSource(clickhouseUrl, props);
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("clickhouse");
+        pool.setDataSource(new ClickHouseDataSource(jdbcUrl(), props));
+        pool.setMaximumPoolSize(poolMaxSize);
+        pool.setMinimumIdle(poolMinIdle);
+        pool.setConnectionTimeout(poolAcquireTimeoutMs);
+        pool.setIdleTimeout(poolIdleTimeoutMs);
+        pool.setMaxLifetime(poolMaxLifetimeMs);
+        pool.setValidationTimeout(Math.min(connectTimeoutMs, poolAcquireTimeoutMs));
+        // Exposes hikaricp.connections.active/idle/pending and the acquire/usage timers
+        pool.setMetricRegistry(meterRegistry);
+        logger.info("ClickHouse connection pool for {} (max {} connections, {} load balancing)", resolveEndpoints(), poolMaxSize, loadBalancingPolicy);
+        return pool;
     }
 
     @Bean
     public JdbcTemplate clickHouseJdbcTemplate(DataSource clickHouseDataSource) {
-        return new JdbcTemplate(clickHouseDataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(clickHouseDataSource);
+        jdbcTemplate.setQueryTimeout(queryTimeoutSeconds);
+        return jdbcTemplate;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ClickHouseClient clickHouseClient() {
+        return ClickHouseClient.builder()
+                .nodeSelector(ClickHouseNodeSelector.of(ClickHouseProtocol.HTTP))
+                .option(ClickHouseClientOption.CONNECTION_TIMEOUT, connectTimeoutMs)
+                .option(ClickHouseClientOption.SOCKET_TIMEOUT, socketTimeoutMs)
+                .option(ClickHouseClientOption.MAX_EXECUTION_TIME, queryTimeoutSeconds)
+                .option(ClickHouseHttpOption.CONNECTION_PROVIDER, HttpConnectionProvider.APACHE_HTTP_CLIENT)
+                .option(ClickHouseHttpOption.KEEP_ALIVE, true)
+                .option(ClickHouseHttpOption.MAX_OPEN_CONNECTIONS, poolMaxSize)
+                .build();
+    }
+
+    /**
+     * HTTP endpoints for the native client: every configured replica, health-checked in the background and
+     * picked per request by the load-balancing policy.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ClickHouseNodes clickHouseNodes(MeterRegistry meterRegistry) {
+        Map<String, String> options = new HashMap<>(nodeOptions());
+        options.put("user", clickhouseUsername);
+        options.put("password", clickhousePassword != null ? clickhousePassword : "");
+        ClickHouseNodes nodes = ClickHouseNodes.of(endpointList("http://") + "/" + database(), options);
+        Gauge.builder("clickhouse.endpoints", nodes, n -> n.getNodes().size()).register(meterRegistry);
+        Gauge.builder("clickhouse.endpoints.faulty", nodes, n -> n.getFaultyNodes().size()).register(meterRegistry);
+        return nodes;
+    }
+
+    @Bean
+    public ClickHouseRowBinaryWriter clickHouseRowBinaryWriter(ClickHouseClient clickHouseClient, ClickHouseNodes clickHouseNodes) {
+        return new ClickHouseRowBinaryWriter(clickHouseClient, clickHouseNodes, insertLz4Compression);
+    }
+
+    @Bean
+    public ClickHouseBarExporter clickHouseBarExporter(ClickHouseClient clickHouseClient, ClickHouseNodes clickHouseNodes) {
+        return new ClickHouseBarExporter(clickHouseClient, clickHouseNodes, exportLz4Compression);
+    }
+
+    /**
+     * With a single endpoint the configured URL is used as is; with replicas they are listed in the
+     * driver's multi-endpoint form, jdbc:clickhouse://(http://host1:8123),(http://host2:8123)/database.
+     */
+    private String jdbcUrl() {
+        if (endpoints == null || endpoints.isEmpty()) {
+            return clickhouseUrl;
+        }
+        return "jdbc:clickhouse://" + endpointList("http://") + "/" + database();
+    }
+
+    private String endpointList(String scheme) {
+        List<String> entries = new ArrayList<>();
+        for (String endpoint : resolveEndpoints()) {
+            entries.add("(" + scheme + endpoint + ")");
+        }
+        return String.join(",", entries);
+    }
+
+    private List<String> resolveEndpoints() {
+        List<String> resolved = new ArrayList<>();
+        if (endpoints != null) {
+            for (String endpoint : endpoints) {
+                if (endpoint != null && !endpoint.trim().isEmpty()) {
+                    resolved.add(endpoint.trim());
+                }
+            }
+        }
+        if (resolved.isEmpty()) {
+            URI uri = baseUri();
+            resolved.add(uri.getHost() + ":" + (uri.getPort() > 0 ? uri.getPort() : 8123));
+        }
+        return resolved;
+    }
+
+    /**
+     * Database from the JDBC URL (jdbc:clickhouse://host:port/database).
+     */
+    private String database() {
+        URI uri = baseUri();
+        return uri.getPath() != null && uri.getPath().length() > 1 ? uri.getPath().substring(1) : "default";
+    }
+
+    private URI baseUri() {
+        return URI.create(clickhouseUrl.replaceFirst("^jdbc:", ""));
+    }
+
+    private Map<String, String> nodeOptions() {
+        Map<String, String> options = new HashMap<>();
+        options.put("load_balancing_policy", loadBalancingPolicy);
+        options.put("health_check_interval", String.valueOf(healthCheckIntervalMs));
+        options.put("failover", String.valueOf(failoverAttempts));
+        return options;
+    }
+
+    private Map<String, String> connectionOptions() {
+        Map<String, String> options = new HashMap<>(nodeOptions());
+        options.put("connect_timeout", String.valueOf(connectTimeoutMs));
+        options.put("socket_timeout", String.valueOf(socketTimeoutMs));
+        options.put("max_execution_time", String.valueOf(queryTimeoutSeconds));
+        // Pooled keep-alive HTTP connections, LZ4-compressed responses
+        options.put("http_connection_provider", HttpConnectionProvider.APACHE_HTTP_CLIENT.name());
+        options.put("http_keep_alive", "true");
+        options.put("max_open_connections", String.valueOf(poolMaxSize));
+        options.put("compress", "true");
+        options.put("compress_algorithm", "LZ4");
+        return options;
     }
 }
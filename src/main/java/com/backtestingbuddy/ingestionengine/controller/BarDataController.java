@@ -0,0 +1,185 @@
+package com.backtestingbuddy.ingestionengine.controller;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.service.BarCache;
+import com.backtestingbuddy.ingestionengine.service.ClickHouseBarExporter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Query API for stored historical bars, served through {@link BarCache}.
+ * <p>
+ * {@code GET /api/bars/{symbol}?from=2020-01-01&to=2021-01-01} returns the bars in {@code [from, to)} as
+ * {@code {"symbol": ..., "bars": [{"time": epochMillis, "open": ..., "high": ..., "low": ..., "close": ...,
+ * "adjClose": ..., "volume": ...}, ...]}}. The body is written month batch by month batch, so long ranges are
+ * never held in memory as a whole.
+ * <p>
+ * {@code GET /api/bars/export?symbols=AAPL,MSFT&from=...&to=...&compression=lz4} is the bulk path: bars are
+ * streamed from ClickHouse in the fixed-width layout documented on {@link ClickHouseBarExporter}, optionally
+ * wrapped in a single LZ4 frame (readable with {@code lz4 -d}).
+ */
+@RestController
+@RequestMapping("/api/bars")
+public class BarDataController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarDataController.class);
+
+    @Autowired
+    private BarCache barCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ClickHouseBarExporter barExporter;
+
+    @GetMapping("/{symbol}")
+    public ResponseEntity<?> getBars(@PathVariable String symbol,
+                                     @RequestParam("from") String from,
+                                     @RequestParam(value = "to", required = false) String to) {
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = to == null ? LocalDate.now(ZoneOffset.UTC).plusDays(1) : LocalDate.parse(to);
+        } catch (DateTimeParseException e) {
+            logger.debug("Validation failed: could not parse bar range {} - {}", from, to);
+            return ResponseEntity.badRequest().body("from and to must be ISO dates (yyyy-MM-dd).");
+        }
+        if (!fromDate.isBefore(toDate)) {
+            return ResponseEntity.badRequest().body("from must be before to.");
+        }
+
+        String normalizedSymbol = symbol.trim().toUpperCase();
+        long fromMillis = fromDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long toMillis = toDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        YearMonth firstMonth = YearMonth.from(fromDate);
+        YearMonth lastMonth = YearMonth.from(toDate.minusDays(1));
+        logger.debug("Streaming bars for {} from {} to {}", normalizedSymbol, fromDate, toDate);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                json.writeStartObject();
+                json.writeStringField("symbol", normalizedSymbol);
+                json.writeArrayFieldStart("bars");
+                YearMonth batchStart = firstMonth;
+                while (!batchStart.isAfter(lastMonth)) {
+                    YearMonth batchEnd = batchStart.plusMonths(barCache.getMaxMonthsPerLoad() - 1L);
+                    if (batchEnd.isAfter(lastMonth)) {
+                        batchEnd = lastMonth;
+                    }
+                    List<BarSeries> months = barCache.getMonths(normalizedSymbol, batchStart, batchEnd);
+                    for (BarSeries bars : months) {
+                        writeBars(json, bars, fromMillis, toMillis);
+                    }
+                    json.flush();
+                    batchStart = batchEnd.plusMonths(1);
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<?> exportBars(@RequestParam("symbols") List<String> symbols,
+                                        @RequestParam("from") String from,
+                                        @RequestParam(value = "to", required = false) String to,
+                                        @RequestParam(value = "compression", defaultValue = "none") String compression) {
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = to == null ? LocalDate.now(ZoneOffset.UTC).plusDays(1) : LocalDate.parse(to);
+        } catch (DateTimeParseException e) {
+            logger.debug("Validation failed: could not parse export range {} - {}", from, to);
+            return ResponseEntity.badRequest().body("from and to must be ISO dates (yyyy-MM-dd).");
+        }
+        if (!fromDate.isBefore(toDate)) {
+            return ResponseEntity.badRequest().body("from must be before to.");
+        }
+        boolean lz4 = "lz4".equalsIgnoreCase(compression);
+        if (!lz4 && !"none".equalsIgnoreCase(compression)) {
+            return ResponseEntity.badRequest().body("compression must be 'none' or 'lz4'.");
+        }
+
+        Set<String> uniqueSymbols = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            if (symbol != null && !symbol.trim().isEmpty()) {
+                uniqueSymbols.add(symbol.trim().toUpperCase());
+            }
+        }
+        List<String> exportSymbols = new ArrayList<>(uniqueSymbols);
+        try {
+            ClickHouseBarExporter.validateSymbols(exportSymbols);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Validation failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        logger.info("Exporting bars for {} symbols from {} to {} (compression {})", exportSymbols.size(), fromDate, toDate, lz4 ? "lz4" : "none");
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = lz4 ? new LZ4FrameOutputStream(outputStream) : outputStream;
+            try {
+                barExporter.export(exportSymbols, fromDate.atStartOfDay(ZoneOffset.UTC).toInstant(),
+                        toDate.atStartOfDay(ZoneOffset.UTC).toInstant(), out);
+                if (lz4) {
+                    // Writes the frame end mark; a failed export leaves the frame unterminated
+                    out.close();
+                }
+            } catch (IOException e) {
+                // The status line is already sent; the truncated body is the only signal left for the client
+                logger.error("Bar export for {} symbols failed: {}", exportSymbols.size(), e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header("X-Bars-Format", "bbar" + ClickHouseBarExporter.FORMAT_VERSION)
+                .header("X-Bars-Compression", lz4 ? "lz4" : "none")
+                .body(body);
+    }
+
+    private static void writeBars(JsonGenerator json, BarSeries bars, long fromMillis, long toMillis) throws IOException {
+        for (int i = 0; i < bars.size(); i++) {
+            long time = bars.getEpochMillis(i);
+            if (time < fromMillis || time >= toMillis) {
+                continue;
+            }
+            json.writeStartObject();
+            json.writeNumberField("time", time);
+            json.writeNumberField("open", BarSeries.toDouble(bars.getOpen(i)));
+            json.writeNumberField("high", BarSeries.toDouble(bars.getHigh(i)));
+            json.writeNumberField("low", BarSeries.toDouble(bars.getLow(i)));
+            json.writeNumberField("close", BarSeries.toDouble(bars.getClose(i)));
+            json.writeNumberField("adjClose", BarSeries.toDouble(bars.getAdjClose(i)));
+            json.writeNumberField("volume", bars.getVolume(i));
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.backtestingbuddy.ingestionengine.controller;
+
+import com.backtestingbuddy.ingestionengine.service.QuotePollingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint ({@code /actuator/quotepolling}) reporting polling throughput, lag and per-symbol state.
+ */
+@Component
+@Endpoint(id = "quotepolling")
+public class QuotePollingEndpoint {
+
+    @Autowired
+    private QuotePollingService quotePollingService;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return quotePollingService.getStatus();
+    }
+
+    @ReadOperation
+    public Map<String, Object> symbol(@Selector String symbol) {
+        return quotePollingService.getSymbolStatus(symbol.toUpperCase());
+    }
+}
@@ -1,23 +1,33 @@
 package com.backtestingbuddy.ingestionengine.controller;
 
+import com.backtestingbuddy.ingestionengine.dto.BulkIngestionRequest;
+import com.backtestingbuddy.ingestionengine.dto.BulkIngestionResult;
 import com.backtestingbuddy.ingestionengine.dto.SecurityRequest;
 import com.backtestingbuddy.ingestionengine.exception.YahooFinanceException;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.service.BulkIngestionService;
 import com.backtestingbuddy.ingestionengine.service.ClickHouseService;
 import com.backtestingbuddy.ingestionengine.service.YahooFinanceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 import yahoofinance.Stock;
-import yahoofinance.histquotes.HistoricalQuote;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/ingestion")
@@ -31,13 +41,16 @@ public class StockDataController {
     @Autowired
     private ClickHouseService clickHouseService;
 
+    @Autowired
+    private BulkIngestionService bulkIngestionService;
+
     @PostMapping("/stock")
-    public ResponseEntity<?> ingestStockData(@RequestBody SecurityRequest securityRequest) {
+    public CompletableFuture<ResponseEntity<?>> ingestStockData(@RequestBody SecurityRequest securityRequest) {
         logger.debug("Entering ingestStockData method.");
 
         if (securityRequest == null || securityRequest.getSecurityName() == null || securityRequest.getSecurityName().trim().isEmpty()) {
             logger.debug("Validation failed: Security name is missing or empty.");
-            return ResponseEntity.badRequest().body("Security name must be provided.");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Security name must be provided."));
         }
 
         String symbol = securityRequest.getSecurityName().trim().toUpperCase();
@@ -50,47 +63,98 @@ public class StockDataController {
             Stock stockQuote = yahooFinanceService.getStockQuote(symbol);
             logger.debug("Received stock quote response for {}. Stock: {}", symbol, stockQuote);
 
+            CompletableFuture<Void> quoteSaved = CompletableFuture.completedFuture(null);
             if (stockQuote != null && stockQuote.getQuote() != null) {
-                logger.debug("Stock quote found for {}. Saving...", symbol);
-                clickHouseService.saveStockQuote(stockQuote);
-                logger.info("Successfully fetched and saved stock quote for {}", symbol);
-                logger.debug("Stock quote saved successfully for {}", symbol);
+                logger.debug("Stock quote found for {}. Queueing save...", symbol);
+                quoteSaved = clickHouseService.saveStockQuoteAsync(stockQuote);
             } else {
                 logger.warn("Could not retrieve stock quote for symbol: {}", symbol);
                 logger.debug("Stock quote is null or quote is null for {}", symbol);
             }
 
-            // Fetch historical data
-            logger.debug("Calling YahooFinanceService.getHistoricalData for {}", symbol);
-            List<HistoricalQuote> historicalData = yahooFinanceService.getHistoricalData(symbol);
-            logger.debug("Received historical data response for {}. Records count: {}", symbol, historicalData != null ? historicalData.size() : 0);
+            // Fetch historical data, only the missing range when running incrementally
+            Instant latestStoredDate = securityRequest.isIncremental()
+                    ? clickHouseService.getLatestHistoricalDates(List.of(symbol)).get(symbol)
+                    : null;
+            logger.debug("Calling YahooFinanceService.getHistoricalBarsSince for {} (latest stored bar: {})", symbol, latestStoredDate);
+            BarSeries historicalBars = yahooFinanceService.getHistoricalBarsSince(symbol, latestStoredDate);
+            logger.debug("Received historical data response for {}. Records count: {}", symbol, historicalBars.size());
 
-            if (historicalData != null && !historicalData.isEmpty()) {
-                logger.debug("Historical data found for {}. Saving {} records...", symbol, historicalData.size());
-                clickHouseService.saveHistoricalData(symbol, historicalData);
-                logger.info("Successfully fetched and saved {} historical records for {}", historicalData.size(), symbol);
-                logger.debug("Historical data saved successfully for {}", symbol);
+            CompletableFuture<Void> historySaved = CompletableFuture.completedFuture(null);
+            if (!historicalBars.isEmpty()) {
+                logger.debug("Historical data found for {}. Queueing save of {} records...", symbol, historicalBars.size());
+                historySaved = clickHouseService.saveHistoricalBarsAsync(historicalBars);
             } else {
                 logger.warn("Could not retrieve historical data for symbol: {}", symbol);
                 logger.debug("Historical data is null or empty for {}", symbol);
             }
             
-            if (stockQuote == null && (historicalData == null || historicalData.isEmpty())) {
+            if (stockQuote == null && historicalBars.isEmpty()) {
                  logger.warn("No data (neither quote nor historical) found for symbol: {}", symbol);
-                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No data found for symbol: " + symbol);
+                 return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND).body("No data found for symbol: " + symbol));
             }
 
-            logger.debug("Ingestion process completed successfully for symbol: {}", symbol);
-            return ResponseEntity.ok("Data ingestion process completed for symbol: " + symbol);
+            int historicalCount = historicalBars.size();
+            return CompletableFuture.allOf(quoteSaved, historySaved).handle((ignored, ex) -> {
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    logger.error("Error saving data for symbol {}: {}", symbol, cause.getMessage(), cause);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error saving data for symbol " + symbol + ": " + cause.getMessage());
+                }
+                logger.info("Successfully fetched and saved data for {} ({} historical records)", symbol, historicalCount);
+                logger.debug("Ingestion process completed successfully for symbol: {}", symbol);
+                return ResponseEntity.ok("Data ingestion process completed for symbol: " + symbol);
+            });
 
         } catch (YahooFinanceException e) {
             logger.error("YahooFinanceException for symbol {}: {}", symbol, e.getMessage(), e);
             logger.debug("YahooFinanceException details for {}: ", symbol, e);
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Error fetching data from Yahoo Finance: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Error fetching data from Yahoo Finance: " + e.getMessage()));
         } catch (Exception e) {
             logger.error("An unexpected error occurred while processing symbol {}: {}", symbol, e.getMessage(), e);
             logger.debug("Unexpected error details for {}: ", symbol, e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/bulk")
+    public CompletableFuture<ResponseEntity<?>> ingestBulk(@RequestBody BulkIngestionRequest bulkRequest) {
+        if (bulkRequest == null || bulkRequest.getSymbols() == null || bulkRequest.getSymbols().isEmpty()) {
+            logger.debug("Validation failed: symbol list is missing or empty.");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("At least one symbol must be provided."));
+        }
+        logger.info("Received bulk ingestion request for {} symbols", bulkRequest.getSymbols().size());
+        return respond(bulkIngestionService.ingestAsync(bulkRequest.getSymbols(), bulkRequest.isIncremental()));
+    }
+
+    @PostMapping(path = "/bulk/universe", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CompletableFuture<ResponseEntity<?>> ingestUniverse(@RequestParam("file") MultipartFile universeFile,
+                                                               @RequestParam(value = "incremental", defaultValue = "false") boolean incremental) {
+        if (universeFile == null || universeFile.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Universe file must be provided."));
+        }
+        List<String> symbols;
+        try {
+            symbols = bulkIngestionService.parseUniverse(universeFile.getInputStream());
+        } catch (IOException e) {
+            logger.error("Could not read universe file {}: {}", universeFile.getOriginalFilename(), e.getMessage(), e);
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Could not read universe file: " + e.getMessage()));
+        }
+        if (symbols.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Universe file does not contain any symbols."));
         }
+        logger.info("Received universe file {} with {} symbols", universeFile.getOriginalFilename(), symbols.size());
+        return respond(bulkIngestionService.ingestAsync(symbols, incremental));
+    }
+
+    private static CompletableFuture<ResponseEntity<?>> respond(CompletableFuture<BulkIngestionResult> run) {
+        return run.handle((result, ex) -> {
+            if (ex != null) {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                logger.error("Bulk ingestion failed: {}", cause.getMessage(), cause);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Bulk ingestion failed: " + cause.getMessage());
+            }
+            return ResponseEntity.ok(result);
+        });
     }
 }
@@ -0,0 +1,68 @@
+package com.backtestingbuddy.ingestionengine.controller;
+
+import com.backtestingbuddy.ingestionengine.dto.WatchlistRequest;
+import com.backtestingbuddy.ingestionengine.model.WatchlistEntry;
+import com.backtestingbuddy.ingestionengine.service.QuotePollingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/watchlist")
+public class WatchlistController {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatchlistController.class);
+
+    @Autowired
+    private QuotePollingService quotePollingService;
+
+    @GetMapping
+    public List<WatchlistEntry> getWatchlist() {
+        return quotePollingService.getWatchlist();
+    }
+
+    @PostMapping
+    public ResponseEntity<?> addToWatchlist(@RequestBody WatchlistRequest watchlistRequest) {
+        if (watchlistRequest == null || watchlistRequest.getSymbols() == null || watchlistRequest.getSymbols().isEmpty()) {
+            logger.debug("Validation failed: watchlist symbol list is missing or empty.");
+            return ResponseEntity.badRequest().body("At least one symbol must be provided.");
+        }
+        Set<String> symbols = new LinkedHashSet<>();
+        for (String symbol : watchlistRequest.getSymbols()) {
+            if (symbol != null && !symbol.trim().isEmpty()) {
+                symbols.add(symbol.trim().toUpperCase());
+            }
+        }
+        List<WatchlistEntry> entries = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            entries.add(new WatchlistEntry(symbol, watchlistRequest.getTier(), watchlistRequest.getIntervalSeconds()));
+        }
+        logger.info("Adding {} symbols to the watchlist (tier {}, interval {}s)", entries.size(), watchlistRequest.getTier(), watchlistRequest.getIntervalSeconds());
+        quotePollingService.addToWatchlist(entries);
+        return ResponseEntity.ok(quotePollingService.getWatchlist());
+    }
+
+    @DeleteMapping("/{symbol}")
+    public ResponseEntity<?> removeFromWatchlist(@PathVariable String symbol) {
+        String normalized = symbol.trim().toUpperCase();
+        if (!quotePollingService.removeFromWatchlist(normalized)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Symbol is not on the watchlist: " + normalized);
+        }
+        logger.info("Removed {} from the watchlist", normalized);
+        return ResponseEntity.ok("Removed " + normalized + " from the watchlist");
+    }
+}
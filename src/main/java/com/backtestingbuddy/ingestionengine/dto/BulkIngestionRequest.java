@@ -0,0 +1,37 @@
+package com.backtestingbuddy.ingestionengine.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BulkIngestionRequest {
+    private List<String> symbols = new ArrayList<>();
+    // Only fetch bars newer than the latest stored date per symbol
+    private boolean incremental;
+
+    // Default constructor
+    public BulkIngestionRequest() {
+    }
+
+    // Constructor with symbols
+    public BulkIngestionRequest(List<String> symbols) {
+        this.symbols = symbols;
+    }
+
+    // Getter
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    // Setter
+    public void setSymbols(List<String> symbols) {
+        this.symbols = symbols;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+}
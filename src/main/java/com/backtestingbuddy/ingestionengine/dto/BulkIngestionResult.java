@@ -0,0 +1,122 @@
+package com.backtestingbuddy.ingestionengine.dto;
+
+import java.util.List;
+
+/**
+ * Summary of a bulk ingestion run: per-symbol outcomes plus overall throughput.
+ */
+public class BulkIngestionResult {
+    private int totalSymbols;
+    private int succeeded;
+    private int noData;
+    private int failed;
+    private long historicalRecords;
+    private long elapsedMs;
+    private double symbolsPerSecond;
+    private double recordsPerSecond;
+    private List<SymbolIngestionResult> results;
+    // Cluster mode only: symbols of the request owned by other nodes and not ingested by this one
+    private List<String> delegatedSymbols;
+
+    // Default constructor
+    public BulkIngestionResult() {
+    }
+
+    public BulkIngestionResult(List<SymbolIngestionResult> results, long elapsedMs) {
+        this.results = results;
+        this.elapsedMs = elapsedMs;
+        this.totalSymbols = results.size();
+        for (SymbolIngestionResult result : results) {
+            switch (result.getStatus()) {
+                case SUCCESS -> succeeded++;
+                case NO_DATA -> noData++;
+                case FAILED -> failed++;
+            }
+            historicalRecords += result.getHistoricalRecords();
+        }
+        double seconds = Math.max(elapsedMs, 1) / 1000.0;
+        this.symbolsPerSecond = totalSymbols / seconds;
+        this.recordsPerSecond = historicalRecords / seconds;
+    }
+
+    // Getters and setters
+    public int getTotalSymbols() {
+        return totalSymbols;
+    }
+
+    public void setTotalSymbols(int totalSymbols) {
+        this.totalSymbols = totalSymbols;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getNoData() {
+        return noData;
+    }
+
+    public void setNoData(int noData) {
+        this.noData = noData;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public long getHistoricalRecords() {
+        return historicalRecords;
+    }
+
+    public void setHistoricalRecords(long historicalRecords) {
+        this.historicalRecords = historicalRecords;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public double getSymbolsPerSecond() {
+        return symbolsPerSecond;
+    }
+
+    public void setSymbolsPerSecond(double symbolsPerSecond) {
+        this.symbolsPerSecond = symbolsPerSecond;
+    }
+
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    public void setRecordsPerSecond(double recordsPerSecond) {
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    public List<SymbolIngestionResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<SymbolIngestionResult> results) {
+        this.results = results;
+    }
+
+    public List<String> getDelegatedSymbols() {
+        return delegatedSymbols;
+    }
+
+    public void setDelegatedSymbols(List<String> delegatedSymbols) {
+        this.delegatedSymbols = delegatedSymbols;
+    }
+}
@@ -2,6 +2,8 @@ package com.backtestingbuddy.ingestionengine.dto;
 
 public class SecurityRequest {
     private String securityName;
+    // Only fetch bars newer than the latest stored date
+    private boolean incremental;
 
     // Default constructor
     public SecurityRequest() {
@@ -21,4 +23,12 @@ public class SecurityRequest {
     public void setSecurityName(String securityName) {
         this.securityName = securityName;
     }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
 }
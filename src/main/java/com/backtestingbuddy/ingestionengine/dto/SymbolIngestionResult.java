@@ -0,0 +1,98 @@
+package com.backtestingbuddy.ingestionengine.dto;
+
+/**
+ * Outcome of ingesting a single symbol as part of a bulk run.
+ */
+public class SymbolIngestionResult {
+
+    public enum Status {
+        SUCCESS,
+        NO_DATA,
+        FAILED
+    }
+
+    private String symbol;
+    private Status status;
+    private boolean quoteSaved;
+    private int historicalRecords;
+    private long durationMs;
+    private String error;
+    private String quoteError;
+
+    // Default constructor
+    public SymbolIngestionResult() {
+    }
+
+    public SymbolIngestionResult(String symbol, Status status, boolean quoteSaved, int historicalRecords, long durationMs, String error) {
+        this.symbol = symbol;
+        this.status = status;
+        this.quoteSaved = quoteSaved;
+        this.historicalRecords = historicalRecords;
+        this.durationMs = durationMs;
+        this.error = error;
+    }
+
+    public static SymbolIngestionResult failed(String symbol, long durationMs, String error) {
+        return new SymbolIngestionResult(symbol, Status.FAILED, false, 0, durationMs, error);
+    }
+
+    // Getters and setters
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public void setSymbol(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public boolean isQuoteSaved() {
+        return quoteSaved;
+    }
+
+    public void setQuoteSaved(boolean quoteSaved) {
+        this.quoteSaved = quoteSaved;
+    }
+
+    public int getHistoricalRecords() {
+        return historicalRecords;
+    }
+
+    public void setHistoricalRecords(int historicalRecords) {
+        this.historicalRecords = historicalRecords;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Why the quote could not be fetched, while the symbol's history may still have been stored.
+     */
+    public String getQuoteError() {
+        return quoteError;
+    }
+
+    public void setQuoteError(String quoteError) {
+        this.quoteError = quoteError;
+    }
+}
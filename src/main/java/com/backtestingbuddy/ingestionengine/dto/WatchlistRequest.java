@@ -0,0 +1,40 @@
+package com.backtestingbuddy.ingestionengine.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WatchlistRequest {
+    private List<String> symbols = new ArrayList<>();
+    // Polling tier, e.g. "fast", "normal" or "slow"; the default tier is used when empty
+    private String tier;
+    // Explicit polling interval overriding the tier when positive
+    private int intervalSeconds;
+
+    // Default constructor
+    public WatchlistRequest() {
+    }
+
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    public void setSymbols(List<String> symbols) {
+        this.symbols = symbols;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public void setTier(String tier) {
+        this.tier = tier;
+    }
+
+    public int getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public void setIntervalSeconds(int intervalSeconds) {
+        this.intervalSeconds = intervalSeconds;
+    }
+}
@@ -0,0 +1,14 @@
+package com.backtestingbuddy.ingestionengine.exception;
+
+/**
+ * Yahoo Finance rejected a request with HTTP 429 (Too Many Requests).
+ */
+public class YahooRateLimitException extends YahooFinanceException {
+    public YahooRateLimitException(String message) {
+        super(message);
+    }
+
+    public YahooRateLimitException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,196 @@
+package com.backtestingbuddy.ingestionengine.model;
+
+import yahoofinance.histquotes.HistoricalQuote;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact column-oriented OHLCV series for one symbol.
+ * <p>
+ * Bars are kept in parallel primitive arrays: timestamps as epoch millis and prices as longs scaled by
+ * 10^{@value #PRICE_SCALE}, matching the Decimal(20, 8) columns in ClickHouse. A bar costs 56 bytes instead of
+ * the Calendar and six BigDecimals held by a {@link HistoricalQuote}; BarSeriesAllocationBenchmark in src/jmh
+ * measures both.
+ */
+public class BarSeries {
+
+    public static final int PRICE_SCALE = 8;
+    public static final long PRICE_MULTIPLIER = 100_000_000L;
+
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final String symbol;
+    private int size;
+    private long[] epochMillis;
+    private long[] open;
+    private long[] high;
+    private long[] low;
+    private long[] close;
+    private long[] adjClose;
+    private long[] volume;
+
+    public BarSeries(String symbol) {
+        this(symbol, DEFAULT_CAPACITY);
+    }
+
+    public BarSeries(String symbol, int capacity) {
+        this.symbol = symbol;
+        int initial = Math.max(capacity, 1);
+        this.epochMillis = new long[initial];
+        this.open = new long[initial];
+        this.high = new long[initial];
+        this.low = new long[initial];
+        this.close = new long[initial];
+        this.adjClose = new long[initial];
+        this.volume = new long[initial];
+    }
+
+    /**
+     * Converts historical quotes into a series, skipping quotes without a date. Missing prices and volumes become zero.
+     */
+    public static BarSeries fromHistoricalQuotes(String symbol, List<HistoricalQuote> historicalQuotes) {
+        BarSeries series = new BarSeries(symbol, historicalQuotes != null ? historicalQuotes.size() : 0);
+        if (historicalQuotes == null) {
+            return series;
+        }
+        for (HistoricalQuote hq : historicalQuotes) {
+            if (hq.getDate() == null) continue; // Skip if date is null
+            series.add(hq.getDate().getTimeInMillis(),
+                    toScaled(hq.getOpen()),
+                    toScaled(hq.getHigh()),
+                    toScaled(hq.getLow()),
+                    toScaled(hq.getClose()),
+                    toScaled(hq.getAdjClose()),
+                    hq.getVolume() != null ? hq.getVolume() : 0L);
+        }
+        return series;
+    }
+
+    public void add(long barEpochMillis, long scaledOpen, long scaledHigh, long scaledLow, long scaledClose, long scaledAdjClose, long barVolume) {
+        if (size == epochMillis.length) {
+            grow();
+        }
+        epochMillis[size] = barEpochMillis;
+        open[size] = scaledOpen;
+        high[size] = scaledHigh;
+        low[size] = scaledLow;
+        close[size] = scaledClose;
+        adjClose[size] = scaledAdjClose;
+        volume[size] = barVolume;
+        size++;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getEpochMillis(int index) {
+        return epochMillis[index];
+    }
+
+    public long getOpen(int index) {
+        return open[index];
+    }
+
+    public long getHigh(int index) {
+        return high[index];
+    }
+
+    public long getLow(int index) {
+        return low[index];
+    }
+
+    public long getClose(int index) {
+        return close[index];
+    }
+
+    public long getAdjClose(int index) {
+        return adjClose[index];
+    }
+
+    public long getVolume(int index) {
+        return volume[index];
+    }
+
+    /**
+     * Earliest bar timestamp, or {@link Long#MAX_VALUE} for an empty series.
+     */
+    public long getFirstEpochMillis() {
+        long first = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            first = Math.min(first, epochMillis[i]);
+        }
+        return first;
+    }
+
+    /**
+     * Latest bar timestamp, or {@link Long#MIN_VALUE} for an empty series.
+     */
+    public long getLastEpochMillis() {
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            last = Math.max(last, epochMillis[i]);
+        }
+        return last;
+    }
+
+    /**
+     * Heap retained by the bar arrays (array headers plus allocated capacity).
+     */
+    public long estimatedHeapBytes() {
+        return 7L * (16 + 8L * epochMillis.length);
+    }
+
+    /**
+     * Shrinks the backing arrays to the number of bars, for series that are kept around (e.g. cached).
+     */
+    public BarSeries trimToSize() {
+        if (epochMillis.length > size && size > 0) {
+            epochMillis = Arrays.copyOf(epochMillis, size);
+            open = Arrays.copyOf(open, size);
+            high = Arrays.copyOf(high, size);
+            low = Arrays.copyOf(low, size);
+            close = Arrays.copyOf(close, size);
+            adjClose = Arrays.copyOf(adjClose, size);
+            volume = Arrays.copyOf(volume, size);
+        }
+        return this;
+    }
+
+    public static long toScaled(BigDecimal price) {
+        if (price == null) {
+            return 0L;
+        }
+        return price.setScale(PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    public static BigDecimal toBigDecimal(long scaledPrice) {
+        return BigDecimal.valueOf(scaledPrice, PRICE_SCALE);
+    }
+
+    public static double toDouble(long scaledPrice) {
+        return scaledPrice / (double) PRICE_MULTIPLIER;
+    }
+
+    private void grow() {
+        int capacity = epochMillis.length + (epochMillis.length >> 1) + 1;
+        epochMillis = Arrays.copyOf(epochMillis, capacity);
+        open = Arrays.copyOf(open, capacity);
+        high = Arrays.copyOf(high, capacity);
+        low = Arrays.copyOf(low, capacity);
+        close = Arrays.copyOf(close, capacity);
+        adjClose = Arrays.copyOf(adjClose, capacity);
+        volume = Arrays.copyOf(volume, capacity);
+    }
+}
@@ -0,0 +1,102 @@
+package com.backtestingbuddy.ingestionengine.model;
+
+/**
+ * Derived per-bar features of one symbol, in parallel primitive columns.
+ * <p>
+ * Prices are adjusted with each bar's {@code adj_close / close} ratio, so the OHLC columns are on the same
+ * split- and dividend-adjusted basis as {@code adj_close}. Indicators that need more history than is available
+ * yet (the first bars of a symbol) are {@code NaN}.
+ */
+public class DerivedSeries {
+
+    private final String symbol;
+    private final int size;
+    private final long[] epochMillis;
+    private final double[] adjOpen;
+    private final double[] adjHigh;
+    private final double[] adjLow;
+    private final double[] adjClose;
+    private final double[] returns;
+    private final double[] sma;
+    private final double[] ema;
+    private final double[] atr;
+    private final double[] volatility;
+
+    public DerivedSeries(String symbol, int size) {
+        this.symbol = symbol;
+        this.size = size;
+        this.epochMillis = new long[size];
+        this.adjOpen = new double[size];
+        this.adjHigh = new double[size];
+        this.adjLow = new double[size];
+        this.adjClose = new double[size];
+        this.returns = new double[size];
+        this.sma = new double[size];
+        this.ema = new double[size];
+        this.atr = new double[size];
+        this.volatility = new double[size];
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // The column arrays are exposed for bulk fills and encoding; they are not copied
+
+    public long[] epochMillis() {
+        return epochMillis;
+    }
+
+    public double[] adjOpen() {
+        return adjOpen;
+    }
+
+    public double[] adjHigh() {
+        return adjHigh;
+    }
+
+    public double[] adjLow() {
+        return adjLow;
+    }
+
+    public double[] adjClose() {
+        return adjClose;
+    }
+
+    /**
+     * Simple return of the adjusted close against the previous bar.
+     */
+    public double[] returns() {
+        return returns;
+    }
+
+    public double[] sma() {
+        return sma;
+    }
+
+    public double[] ema() {
+        return ema;
+    }
+
+    /**
+     * Wilder's average true range of the adjusted prices.
+     */
+    public double[] atr() {
+        return atr;
+    }
+
+    /**
+     * Annualized standard deviation of the returns over the volatility window.
+     */
+    public double[] volatility() {
+        return volatility;
+    }
+}
@@ -0,0 +1,34 @@
+package com.backtestingbuddy.ingestionengine.model;
+
+/**
+ * A symbol on the quote polling watchlist. The polling interval comes from {@code intervalSeconds} when it is
+ * positive, otherwise from the symbol's tier.
+ * <p>
+ * A missing tier is always {@code null} and a missing interval always 0, whether the entry came from a request
+ * or from the watchlist table (which stores them as {@code ''} and 0), so a reload sees an unchanged entry as
+ * unchanged.
+ */
+public class WatchlistEntry {
+
+    private final String symbol;
+    private final String tier;
+    private final int intervalSeconds;
+
+    public WatchlistEntry(String symbol, String tier, int intervalSeconds) {
+        this.symbol = symbol;
+        this.tier = tier != null && !tier.isEmpty() ? tier : null;
+        this.intervalSeconds = Math.max(intervalSeconds, 0);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+
+    public int getIntervalSeconds() {
+        return intervalSeconds;
+    }
+}
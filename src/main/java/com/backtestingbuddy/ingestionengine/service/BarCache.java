@@ -0,0 +1,189 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of stored historical bars, kept as one compact {@link BarSeries} per symbol and UTC month.
+ * <p>
+ * Missing months are loaded from ClickHouse in runs of up to {@code maxMonthsPerLoad} months per query. Chunks
+ * are evicted least-recently-used once their combined heap size exceeds {@code maxBytes}. A write of historical
+ * data drops the chunks it overlaps; a load that raced with such a write is returned to its caller but not cached.
+ * <p>
+ * Invalidation only sees writes made by this instance. In cluster mode another node may store bars for a symbol
+ * this node has cached, and those chunks stay stale until they are evicted or {@link #clear()} is called, so
+ * readers that need the latest bars should only go through the cache for symbols the local node owns.
+ */
+@Service
+public class BarCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(BarCache.class);
+
+    @Autowired
+    private ClickHouseService clickHouseService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.bar-cache.max-bytes:268435456}") // Default to 256 MiB of bar chunks
+    private long maxBytes;
+
+    @Value("${ingestion.bar-cache.max-months-per-load:12}")
+    private int maxMonthsPerLoad;
+
+    private WeightedLruCache<ChunkKey, BarSeries> chunks;
+    // Bumped on every write for a symbol, so loads that overlapped a write are not cached
+    private final Map<String, AtomicLong> writeVersions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void initializeCache() {
+        chunks = new WeightedLruCache<>("bars", maxBytes, BarSeries::estimatedHeapBytes, meterRegistry);
+        logger.info("Bar cache ready (max {} bytes, up to {} months per load)", maxBytes, maxMonthsPerLoad);
+    }
+
+    public int getMaxMonthsPerLoad() {
+        return maxMonthsPerLoad;
+    }
+
+    /**
+     * Returns the chunks for {@code first} through {@code last} inclusive, one per month in order.
+     */
+    public List<BarSeries> getMonths(String symbol, YearMonth first, YearMonth last) {
+        List<BarSeries> result = new ArrayList<>();
+        YearMonth month = first;
+        while (!month.isAfter(last)) {
+            BarSeries cached = chunks.get(new ChunkKey(symbol, month));
+            if (cached != null) {
+                result.add(cached);
+                month = month.plusMonths(1);
+                continue;
+            }
+            // Load the run of missing months starting here in one query
+            YearMonth runEnd = month;
+            while (runEnd.isBefore(last)
+                    && monthsBetween(month, runEnd) + 1 < maxMonthsPerLoad
+                    && !chunks.contains(new ChunkKey(symbol, runEnd.plusMonths(1)))) {
+                runEnd = runEnd.plusMonths(1);
+            }
+            result.addAll(load(symbol, month, runEnd));
+            month = runEnd.plusMonths(1);
+        }
+        return result;
+    }
+
+    @EventListener
+    public void onHistoricalDataWritten(HistoricalDataWrittenEvent event) {
+        YearMonth firstMonth = toMonth(event.getFirstEpochMillis());
+        YearMonth lastMonth = toMonth(event.getLastEpochMillis());
+        int removed = 0;
+        synchronized (writeVersions) {
+            writeVersion(event.getSymbol()).incrementAndGet();
+            // One lookup per written month rather than a scan of every cached chunk
+            for (YearMonth month = firstMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+                if (chunks.remove(new ChunkKey(event.getSymbol(), month))) {
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            logger.debug("Invalidated {} cached bar chunks for {} between {} and {}", removed, event.getSymbol(), firstMonth, lastMonth);
+        }
+    }
+
+    public void clear() {
+        chunks.clear();
+    }
+
+    private List<BarSeries> load(String symbol, YearMonth first, YearMonth last) {
+        long version = writeVersion(symbol).get();
+        Instant from = first.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant to = last.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        BarSeries bars = clickHouseService.getHistoricalBars(symbol, from, to);
+
+        // Split into months; bars come back ordered by date
+        List<BarSeries> months = new ArrayList<>();
+        int index = 0;
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            long monthEnd = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            int start = index;
+            while (index < bars.size() && bars.getEpochMillis(index) < monthEnd) {
+                index++;
+            }
+            BarSeries chunk = new BarSeries(symbol, index - start);
+            for (int i = start; i < index; i++) {
+                chunk.add(bars.getEpochMillis(i), bars.getOpen(i), bars.getHigh(i), bars.getLow(i),
+                        bars.getClose(i), bars.getAdjClose(i), bars.getVolume(i));
+            }
+            months.add(chunk);
+        }
+
+        // Checked and stored under the same lock as invalidation, so a write cannot slip in between
+        synchronized (writeVersions) {
+            if (writeVersion(symbol).get() == version) {
+                for (int i = 0; i < months.size(); i++) {
+                    chunks.put(new ChunkKey(symbol, first.plusMonths(i)), months.get(i));
+                }
+            } else {
+                logger.debug("Not caching bars for {} loaded while new data was being written", symbol);
+            }
+        }
+        logger.debug("Loaded {} bars for {} from {} to {} into {} chunks", bars.size(), symbol, first, last, months.size());
+        return months;
+    }
+
+    private AtomicLong writeVersion(String symbol) {
+        return writeVersions.computeIfAbsent(symbol, s -> new AtomicLong());
+    }
+
+    private static long monthsBetween(YearMonth first, YearMonth last) {
+        return (last.getYear() - first.getYear()) * 12L + last.getMonthValue() - first.getMonthValue();
+    }
+
+    static YearMonth toMonth(long epochMillis) {
+        return YearMonth.from(Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC));
+    }
+
+    private static final class ChunkKey {
+        private final String symbol;
+        private final YearMonth month;
+
+        private ChunkKey(String symbol, YearMonth month) {
+            this.symbol = symbol;
+            this.month = month;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey other = (ChunkKey) o;
+            return symbol.equals(other.symbol) && month.equals(other.month);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(symbol, month);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.dto.BulkIngestionResult;
+import com.backtestingbuddy.ingestionengine.dto.SymbolIngestionResult;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import yahoofinance.Stock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class BulkIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkIngestionService.class);
+
+    @Autowired
+    private YahooFinanceService yahooFinanceService;
+
+    @Autowired
+    private ClickHouseService clickHouseService;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
+    @Value("${ingestion.bulk.fetch-concurrency:8}")
+    private int fetchConcurrency;
+
+    @Value("${ingestion.bulk.persist-concurrency:4}")
+    private int persistConcurrency;
+
+    @Value("${ingestion.bulk.max-in-flight:64}")
+    private int maxInFlight;
+
+    private IngestionPipeline pipeline;
+    // Drives runs started through ingestAsync; the pipeline's own pools do the fetching and persisting
+    private ExecutorService runExecutor;
+
+    @PostConstruct
+    public void initializePipeline() {
+        pipeline = new IngestionPipeline(fetchConcurrency, persistConcurrency, maxInFlight);
+        runExecutor = Executors.newCachedThreadPool(IngestionPipeline.namedThreads("bulk-run"));
+        logger.info("Bulk ingestion pipeline ready (fetch concurrency {}, persist concurrency {}, max in flight {})",
+                fetchConcurrency, persistConcurrency, maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdownPipeline() {
+        if (runExecutor != null) {
+            runExecutor.shutdownNow();
+        }
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Runs {@link #ingest(Collection, boolean)} on a background thread, so callers such as the HTTP endpoints do
+     * not hold a thread for the length of a universe-sized run.
+     */
+    public CompletableFuture<BulkIngestionResult> ingestAsync(Collection<String> symbols, boolean incremental) {
+        return CompletableFuture.supplyAsync(() -> ingest(symbols, incremental), runExecutor);
+    }
+
+    /**
+     * Ingests {@code symbols}; in cluster mode only the ones this node owns, see {@link ClusterCoordinator}.
+     */
+    public BulkIngestionResult ingest(Collection<String> symbols, boolean incremental) {
+        List<String> normalized = normalizeSymbols(symbols);
+        if (clusterCoordinator.isEnabled()) {
+            return ingestOwned(normalized, incremental);
+        }
+        return run(normalized, incremental);
+    }
+
+    /**
+     * Cluster mode: every node receives the same universe and ingests its own share. Symbols that move to this
+     * node while its run is in progress (a peer died) are ingested afterwards; symbols that move away are still
+     * finished here.
+     * <p>
+     * Ownership is only re-checked while this node is working. A peer that dies after this node has returned
+     * leaves its remaining symbols unprocessed, so the result lists the symbols left to other nodes as
+     * {@code delegatedSymbols}; compare them with the peers' results and resubmit any that nobody ingested.
+     */
+    private BulkIngestionResult ingestOwned(List<String> symbols, boolean incremental) {
+        long start = System.nanoTime();
+        List<SymbolIngestionResult> results = new ArrayList<>();
+        Set<String> processed = new HashSet<>();
+        long membershipVersion = clusterCoordinator.getMembershipVersion();
+        List<String> owned = clusterCoordinator.ownedSymbols(symbols);
+        logger.info("Cluster node '{}' owns {} of {} symbols ({} live nodes)", clusterCoordinator.getNodeId(),
+                owned.size(), symbols.size(), clusterCoordinator.getLiveNodes().size());
+        while (!owned.isEmpty()) {
+            results.addAll(run(owned, incremental).getResults());
+            processed.addAll(owned);
+            if (clusterCoordinator.getMembershipVersion() == membershipVersion) {
+                break;
+            }
+            membershipVersion = clusterCoordinator.getMembershipVersion();
+            owned = new ArrayList<>();
+            for (String symbol : clusterCoordinator.ownedSymbols(symbols)) {
+                if (!processed.contains(symbol)) {
+                    owned.add(symbol);
+                }
+            }
+            if (!owned.isEmpty()) {
+                logger.info("Cluster membership changed during bulk ingestion, taking over {} reassigned symbols", owned.size());
+            }
+        }
+        List<String> delegated = new ArrayList<>();
+        for (String symbol : symbols) {
+            if (!processed.contains(symbol)) {
+                delegated.add(symbol);
+            }
+        }
+        BulkIngestionResult result = new BulkIngestionResult(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        result.setDelegatedSymbols(delegated);
+        return result;
+    }
+
+    private BulkIngestionResult run(List<String> symbols, boolean incremental) {
+        logger.info("Starting {} bulk ingestion for {} symbols", incremental ? "incremental" : "full", symbols.size());
+        Map<String, Instant> latestDates = incremental
+                ? clickHouseService.getLatestHistoricalDates(symbols)
+                : Collections.emptyMap();
+        return pipeline.run(symbols, symbol -> fetch(symbol, latestDates.get(symbol)), this::persist);
+    }
+
+    /**
+     * Reads a universe file: one symbol per line (commas are also accepted as separators),
+     * blank lines and lines starting with '#' are ignored.
+     */
+    public List<String> parseUniverse(InputStream universe) throws IOException {
+        List<String> symbols = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(universe, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                for (String token : trimmed.split(",")) {
+                    symbols.add(token);
+                }
+            }
+        }
+        return symbols;
+    }
+
+    private CompletableFuture<FetchedSymbolData> fetch(String symbol, Instant latestStoredDate) {
+        logger.debug("Fetching quote and historical data for {}", symbol);
+        CompletableFuture<Stock> quote = yahooFinanceService.getStockQuoteAsync(symbol);
+        CompletableFuture<BarSeries> historicalBars = yahooFinanceService.getHistoricalBarsSinceAsync(symbol, latestStoredDate);
+        // A failed quote must not discard the history; it is reported on the symbol's result instead
+        return quote.handle((stock, error) -> error)
+                .thenCombine(historicalBars, (quoteError, bars) -> quoteError == null
+                        ? new FetchedSymbolData(symbol, quote.join(), bars)
+                        : new FetchedSymbolData(symbol, null, bars, YahooRequestScheduler.unwrap(quoteError).getMessage()));
+    }
+
+    private CompletableFuture<Void> persist(FetchedSymbolData data) {
+        logger.debug("Persisting fetched data for {}", data.getSymbol());
+        CompletableFuture<Void> quoteSaved = data.hasQuote()
+                ? clickHouseService.saveStockQuoteAsync(data.getQuote())
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> historySaved = data.getHistoricalRecordCount() > 0
+                ? clickHouseService.saveHistoricalBarsAsync(data.getHistoricalBars())
+                : CompletableFuture.completedFuture(null);
+        return CompletableFuture.allOf(quoteSaved, historySaved);
+    }
+
+    private static List<String> normalizeSymbols(Collection<String> symbols) {
+        Set<String> unique = new LinkedHashSet<>();
+        if (symbols != null) {
+            for (String symbol : symbols) {
+                if (symbol != null && !symbol.trim().isEmpty()) {
+                    unique.add(symbol.trim().toUpperCase());
+                }
+            }
+        }
+        return new ArrayList<>(unique);
+    }
+}
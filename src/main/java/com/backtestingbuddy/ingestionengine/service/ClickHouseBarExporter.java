@@ -0,0 +1,150 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseNode;
+import com.clickhouse.client.ClickHouseNodeSelector;
+import com.clickhouse.client.ClickHouseResponse;
+import com.clickhouse.client.config.ClickHouseClientOption;
+import com.clickhouse.data.ClickHouseCompression;
+import com.clickhouse.data.ClickHouseFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Streams stored historical bars out of ClickHouse in a fixed-width binary layout.
+ * <p>
+ * ClickHouse does the conversion: the query casts every column to a fixed-size integer, so its RowBinary
+ * output already is the row layout below and the response body is copied to the caller unchanged, without
+ * decoding a single row in Java. All integers are little-endian.
+ * <pre>
+ * header:  "BBAR"              4 bytes magic
+ *          version      UInt8  = 1
+ *          price scale  UInt8  = 8 (prices are value * 10^8)
+ *          row bytes    UInt16 = 54
+ *          symbol count UInt16
+ *          symbols      per symbol: UInt8 length, ASCII bytes
+ * rows:    symbol index UInt16 (position in the header's symbol list)
+ *          date         UInt32 epoch seconds
+ *          open, high, low, close, adj_close  Int64 each, scaled
+ *          volume       Int64
+ * </pre>
+ * Rows follow the header until the end of the stream, ordered by symbol then date and deduplicated to the
+ * most recently fetched row per date.
+ */
+public class ClickHouseBarExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickHouseBarExporter.class);
+
+    static final byte[] MAGIC = "BBAR".getBytes(StandardCharsets.US_ASCII);
+    public static final int FORMAT_VERSION = 1;
+    static final int ROW_BYTES = 54;
+    private static final int MAX_SYMBOLS = 0xFFFF;
+    // Symbols are inlined into the query, so only plain ticker characters are accepted
+    private static final Pattern SYMBOL_PATTERN = Pattern.compile("[A-Z0-9.^=\\-]{1,32}");
+
+    private final ClickHouseClient client;
+    // A single node or a load-balanced, health-checked set of replicas
+    private final Function<ClickHouseNodeSelector, ClickHouseNode> server;
+    private final boolean lz4Compression;
+
+    public ClickHouseBarExporter(ClickHouseClient client, Function<ClickHouseNodeSelector, ClickHouseNode> server, boolean lz4Compression) {
+        this.client = client;
+        this.server = server;
+        this.lz4Compression = lz4Compression;
+    }
+
+    /**
+     * Writes the header and all bars of {@code symbols} in {@code [from, to)} to {@code out}.
+     *
+     * @return number of bytes written
+     * @throws IllegalArgumentException if a symbol is not a plain ticker or there are too many symbols
+     */
+    public long export(List<String> symbols, Instant from, Instant to, OutputStream out) throws IOException {
+        validateSymbols(symbols);
+        byte[] header = encodeHeader(symbols);
+        long start = System.nanoTime();
+        try (ClickHouseResponse response = client.read(server)
+                .option(ClickHouseClientOption.COMPRESS, lz4Compression)
+                .option(ClickHouseClientOption.COMPRESS_ALGORITHM, ClickHouseCompression.LZ4)
+                .format(ClickHouseFormat.RowBinary)
+                .query(buildQuery(symbols, from, to))
+                .executeAndWait()) {
+            out.write(header);
+            long rowBytes;
+            try (InputStream rows = response.getInputStream()) {
+                rowBytes = rows.transferTo(out);
+            }
+            out.flush();
+            logger.debug("Exported {} bars for {} symbols ({} bytes) in {}ms", rowBytes / ROW_BYTES, symbols.size(),
+                    header.length + rowBytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return header.length + rowBytes;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Bar export failed: " + e.getMessage(), e);
+        }
+    }
+
+    public static void validateSymbols(List<String> symbols) {
+        if (symbols.isEmpty() || symbols.size() > MAX_SYMBOLS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SYMBOLS + " symbols must be exported");
+        }
+        for (String symbol : symbols) {
+            if (symbol == null || !SYMBOL_PATTERN.matcher(symbol).matches()) {
+                throw new IllegalArgumentException("Invalid symbol for export: " + symbol);
+            }
+        }
+    }
+
+    static byte[] encodeHeader(List<String> symbols) {
+        int size = MAGIC.length + 6;
+        for (String symbol : symbols) {
+            size += 1 + symbol.length();
+        }
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC);
+        header.put((byte) FORMAT_VERSION);
+        header.put((byte) BarSeries.PRICE_SCALE);
+        header.putShort((short) ROW_BYTES);
+        header.putShort((short) symbols.size());
+        for (String symbol : symbols) {
+            header.put((byte) symbol.length());
+            header.put(symbol.getBytes(StandardCharsets.US_ASCII));
+        }
+        return header.array();
+    }
+
+    static String buildQuery(List<String> symbols, Instant from, Instant to) {
+        String symbolArray = "['" + String.join("', '", symbols) + "']";
+        String symbolSet = "('" + String.join("', '", symbols) + "')";
+        return """
+                SELECT
+                    toUInt16(indexOf(%1$s, symbol) - 1),
+                    toUInt32(date),
+                    toInt64(open * %2$d),
+                    toInt64(high * %2$d),
+                    toInt64(low * %2$d),
+                    toInt64(close * %2$d),
+                    toInt64(adj_close * %2$d),
+                    volume
+                FROM %3$s
+                WHERE symbol IN %6$s AND date >= toDateTime(%4$d) AND date < toDateTime(%5$d)
+                ORDER BY symbol, date, fetch_time DESC
+                LIMIT 1 BY symbol, date
+                """.formatted(symbolArray, BarSeries.PRICE_MULTIPLIER, ClickHouseRowBinaryWriter.HISTORICAL_DATA_TABLE,
+                from.getEpochSecond(), to.getEpochSecond(), symbolSet);
+    }
+}
@@ -0,0 +1,144 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.model.DerivedSeries;
+import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseNode;
+import com.clickhouse.client.ClickHouseNodeSelector;
+import com.clickhouse.client.ClickHouseResponse;
+import com.clickhouse.client.config.ClickHouseClientOption;
+import com.clickhouse.data.ClickHouseCompression;
+import com.clickhouse.data.ClickHouseFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Streams historical bars (and the derived rows computed from them) to ClickHouse in RowBinary format
+ * through the native ClickHouse client, bypassing JDBC parameter binding. Rows are encoded from the primitive
+ * {@link BarSeries} columns straight into the request body while it is being sent; with LZ4 enabled the body
+ * is compressed on the client and decompressed by the server.
+ */
+public class ClickHouseRowBinaryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickHouseRowBinaryWriter.class);
+
+    public static final String HISTORICAL_DATA_TABLE = "stock_historical_data";
+    private static final String HISTORICAL_DATA_COLUMNS = "(symbol, date, open, high, low, close, adj_close, volume)";
+    public static final String DERIVED_DATA_TABLE = "stock_derived_data";
+    private static final String DERIVED_DATA_COLUMNS = "(symbol, date, adj_open, adj_high, adj_low, adj_close, simple_return, sma, ema, atr, volatility)";
+
+    private final ClickHouseClient client;
+    // A single node or a load-balanced, health-checked set of replicas
+    private final Function<ClickHouseNodeSelector, ClickHouseNode> server;
+    private final boolean lz4Compression;
+
+    public ClickHouseRowBinaryWriter(ClickHouseClient client, Function<ClickHouseNodeSelector, ClickHouseNode> server, boolean lz4Compression) {
+        this.client = client;
+        this.server = server;
+        this.lz4Compression = lz4Compression;
+    }
+
+    /**
+     * Inserts all series into {@value #HISTORICAL_DATA_TABLE} in a single request.
+     *
+     * @return number of uncompressed RowBinary bytes sent
+     */
+    public long insertHistoricalData(List<BarSeries> seriesList) throws IOException {
+        return insertHistoricalData(HISTORICAL_DATA_TABLE, seriesList);
+    }
+
+    public long insertHistoricalData(String table, List<BarSeries> seriesList) throws IOException {
+        return insert(table, HISTORICAL_DATA_COLUMNS, encoder -> {
+            for (BarSeries series : seriesList) {
+                encodeBarSeries(encoder, series);
+            }
+        });
+    }
+
+    /**
+     * Inserts derived rows into {@value #DERIVED_DATA_TABLE} in a single request.
+     *
+     * @return number of uncompressed RowBinary bytes sent
+     */
+    public long insertDerivedData(List<DerivedSeries> seriesList) throws IOException {
+        return insert(DERIVED_DATA_TABLE, DERIVED_DATA_COLUMNS, encoder -> {
+            for (DerivedSeries series : seriesList) {
+                encodeDerivedSeries(encoder, series);
+            }
+        });
+    }
+
+    private long insert(String table, String columns, RowsWriter rows) throws IOException {
+        long[] bytesSent = new long[1];
+        long start = System.nanoTime();
+        try (ClickHouseResponse response = client.read(server)
+                .write()
+                .option(ClickHouseClientOption.DECOMPRESS, lz4Compression)
+                .option(ClickHouseClientOption.DECOMPRESS_ALGORITHM, ClickHouseCompression.LZ4)
+                .format(ClickHouseFormat.RowBinary)
+                .query("INSERT INTO " + table + " " + columns + " FORMAT RowBinary")
+                .data(output -> {
+                    RowBinaryEncoder encoder = new RowBinaryEncoder(output);
+                    rows.write(encoder);
+                    encoder.flush();
+                    bytesSent[0] = encoder.getBytesWritten();
+                })
+                .executeAndWait()) {
+            logger.debug("RowBinary insert into {} sent {} bytes ({} rows written) in {}ms", table, bytesSent[0],
+                    response.getSummary().getWrittenRows(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            throw new IOException("RowBinary insert into " + table + " failed: " + e.getMessage(), e);
+        }
+        return bytesSent[0];
+    }
+
+    public static void encodeBarSeries(RowBinaryEncoder encoder, BarSeries series) throws IOException {
+        String symbol = series.getSymbol();
+        for (int i = 0; i < series.size(); i++) {
+            encoder.writeString(symbol);
+            encoder.writeDateTime(TimeUnit.MILLISECONDS.toSeconds(series.getEpochMillis(i)));
+            encoder.writeDecimal128(series.getOpen(i));
+            encoder.writeDecimal128(series.getHigh(i));
+            encoder.writeDecimal128(series.getLow(i));
+            encoder.writeDecimal128(series.getClose(i));
+            encoder.writeDecimal128(series.getAdjClose(i));
+            encoder.writeInt64(series.getVolume(i));
+        }
+    }
+
+    public static void encodeDerivedSeries(RowBinaryEncoder encoder, DerivedSeries series) throws IOException {
+        String symbol = series.getSymbol();
+        long[] time = series.epochMillis();
+        double[] open = series.adjOpen();
+        double[] high = series.adjHigh();
+        double[] low = series.adjLow();
+        double[] close = series.adjClose();
+        double[] returns = series.returns();
+        double[] sma = series.sma();
+        double[] ema = series.ema();
+        double[] atr = series.atr();
+        double[] volatility = series.volatility();
+        for (int i = 0; i < series.size(); i++) {
+            encoder.writeString(symbol);
+            encoder.writeDateTime(TimeUnit.MILLISECONDS.toSeconds(time[i]));
+            encoder.writeFloat64(open[i]);
+            encoder.writeFloat64(high[i]);
+            encoder.writeFloat64(low[i]);
+            encoder.writeFloat64(close[i]);
+            encoder.writeFloat64(returns[i]);
+            encoder.writeFloat64(sma[i]);
+            encoder.writeFloat64(ema[i]);
+            encoder.writeFloat64(atr[i]);
+            encoder.writeFloat64(volatility[i]);
+        }
+    }
+
+    private interface RowsWriter {
+        void write(RowBinaryEncoder encoder) throws IOException;
+    }
+}
@@ -1,137 +1,935 @@
 package com.backtestingbuddy.ingestionengine.service;
 
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.model.DerivedSeries;
+import com.backtestingbuddy.ingestionengine.model.WatchlistEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import yahoofinance.Stock;
 import yahoofinance.histquotes.HistoricalQuote;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct; // Changed import
-import java.math.BigDecimal;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.sql.Timestamp;
-import java.sql.Types;
-import java.util.List;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 @Service
 public class ClickHouseService {
 
     private static final Logger logger = LoggerFactory.getLogger(ClickHouseService.class);
 
+    private static final String INSERT_STOCK_QUOTE_SQL = "INSERT INTO stock_quotes (symbol, name, currency, stock_exchange, quote_price, ask, bid, day_low, day_high, year_low, year_high, volume, market_cap, last_trade_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    public static final String INSERT_HISTORICAL_DATA_SQL = "INSERT INTO stock_historical_data (symbol, date, open, high, low, close, adj_close, volume) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_WATCHLIST_SQL = "INSERT INTO quote_watchlist (symbol, tier, interval_seconds, active) VALUES (?, ?, ?, ?)";
+
+    private static final String STOCK_QUOTE_COLUMNS = "symbol, name, currency, stock_exchange, quote_price, ask, bid, day_low, day_high, year_low, year_high, volume, market_cap, last_trade_time, fetch_time";
+    private static final String HISTORICAL_DATA_COLUMNS = "symbol, date, open, high, low, close, adj_close, volume, fetch_time";
+
+    // Deduplicating schema (clickhouse.schema.mode=dedup): re-ingested rows collapse to the latest fetch on merge,
+    // monthly partitions keep merges and date-range scans local. Delta/Gorilla do not apply to Decimal128 prices,
+    // so those get plain ZSTD; time columns get DoubleDelta and volumes T64.
+    private static final String DEDUP_STOCK_QUOTES_DDL = """
+            CREATE TABLE IF NOT EXISTS %s (
+                symbol LowCardinality(String),
+                name String CODEC(ZSTD(1)),
+                currency LowCardinality(String),
+                stock_exchange LowCardinality(String),
+                quote_price Decimal(20, 8) CODEC(ZSTD(1)),
+                ask Decimal(20, 8) CODEC(ZSTD(1)),
+                bid Decimal(20, 8) CODEC(ZSTD(1)),
+                day_low Decimal(20, 8) CODEC(ZSTD(1)),
+                day_high Decimal(20, 8) CODEC(ZSTD(1)),
+                year_low Decimal(20, 8) CODEC(ZSTD(1)),
+                year_high Decimal(20, 8) CODEC(ZSTD(1)),
+                volume Int64 CODEC(T64, ZSTD(1)),
+                market_cap Int64 CODEC(T64, ZSTD(1)),
+                last_trade_time DateTime CODEC(DoubleDelta, ZSTD(1)),
+                fetch_time DateTime DEFAULT now() CODEC(DoubleDelta, ZSTD(1))
+            ) ENGINE = ReplacingMergeTree(fetch_time)
+            PARTITION BY toYYYYMM(last_trade_time)
+            ORDER BY (symbol, last_trade_time)
+            """;
+    private static final String DEDUP_HISTORICAL_DATA_DDL = """
+            CREATE TABLE IF NOT EXISTS %s (
+                symbol LowCardinality(String),
+                date DateTime CODEC(DoubleDelta, ZSTD(1)),
+                open Decimal(20, 8) CODEC(ZSTD(1)),
+                high Decimal(20, 8) CODEC(ZSTD(1)),
+                low Decimal(20, 8) CODEC(ZSTD(1)),
+                close Decimal(20, 8) CODEC(ZSTD(1)),
+                adj_close Decimal(20, 8) CODEC(ZSTD(1)),
+                volume Int64 CODEC(T64, ZSTD(1)),
+                fetch_time DateTime DEFAULT now() CODEC(DoubleDelta, ZSTD(1))
+            ) ENGINE = ReplacingMergeTree(fetch_time)
+            PARTITION BY toYYYYMM(date)
+            ORDER BY (symbol, date)
+            """;
+
+    // Deduplicated reads without FINAL: keep the most recently fetched row per key. Works on both schemas.
+    private static final String SELECT_HISTORICAL_BARS_SQL = """
+            SELECT date, open, high, low, close, adj_close, volume
+            FROM stock_historical_data
+            WHERE symbol = ? AND date >= ? AND date < ?
+            ORDER BY date, fetch_time DESC
+            LIMIT 1 BY date
+            """;
+
+    // Grouped reads for many symbols at once, each with its own range; %s is one condition per symbol
+    private static final String SELECT_HISTORICAL_BARS_GROUPED_SQL = """
+            SELECT symbol, date, open, high, low, close, adj_close, volume
+            FROM stock_historical_data
+            WHERE %s
+            ORDER BY symbol, date, fetch_time DESC
+            LIMIT 1 BY symbol, date
+            """;
+
+    private static final String SELECT_DERIVED_HISTORY_GROUPED_SQL = """
+            SELECT symbol, date, adj_open, adj_high, adj_low, adj_close, simple_return, sma, ema, atr, volatility
+            FROM (
+                SELECT symbol, date, adj_open, adj_high, adj_low, adj_close, simple_return, sma, ema, atr, volatility
+                FROM stock_derived_data
+                WHERE %s
+                ORDER BY symbol, date DESC, computed_at DESC
+                LIMIT 1 BY symbol, date
+            )
+            ORDER BY symbol, date DESC
+            LIMIT ? BY symbol
+            """;
+
+    // Rough in-memory size of a buffered quote row, used for the buffer's byte limit
+    private static final long STOCK_QUOTE_ROW_BYTES = 256;
+
     @Autowired
     private JdbcTemplate clickHouseJdbcTemplate;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClickHouseRowBinaryWriter rowBinaryWriter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${clickhouse.insert.mode:rowbinary}") // rowbinary or jdbc
+    private String insertMode;
+
+    @Value("${clickhouse.schema.mode:legacy}") // legacy (MergeTree) or dedup (ReplacingMergeTree)
+    private String schemaMode;
+
+    @Value("${clickhouse.schema.migrate:false}") // Convert existing legacy tables on startup in dedup mode
+    private boolean migrateSchema;
+
+    @Value("${clickhouse.high-water-mark.batch-size:500}") // Symbols per grouped lookup (max(date), derived-data restores)
+    private int highWaterMarkBatchSize;
+
+    @Value("${clickhouse.buffer.max-rows:50000}")
+    private int bufferMaxRows;
+
+    @Value("${clickhouse.buffer.max-bytes:16777216}") // 16 MiB
+    private long bufferMaxBytes;
+
+    @Value("${clickhouse.buffer.max-delay-ms:1000}")
+    private long bufferMaxDelayMs;
+
+    @Value("${clickhouse.buffer.capacity-rows:500000}")
+    private int bufferCapacityRows;
+
+    @Value("${clickhouse.buffer.offer-timeout-ms:30000}")
+    private long bufferOfferTimeoutMs;
+
+    @Value("${clickhouse.buffer.shutdown-timeout-ms:30000}")
+    private long bufferShutdownTimeoutMs;
+
+    @Value("${ingestion.journal.enabled:false}") // Journal writes locally before they reach ClickHouse
+    private boolean journalEnabled;
+
+    @Value("${ingestion.journal.directory:data/journal}")
+    private String journalDirectory;
+
+    @Value("${ingestion.journal.segment-bytes:67108864}") // 64 MiB
+    private int journalSegmentBytes;
+
+    @Value("${ingestion.journal.fsync-interval-ms:200}")
+    private long journalFsyncIntervalMs;
+
+    @Value("${ingestion.journal.replay-interval-ms:30000}") // How often failed writes are retried
+    private long journalReplayIntervalMs;
+
+    @Value("${ingestion.journal.replay-max-attempts:10}") // Replays of one entry before it is dead-lettered
+    private int journalReplayMaxAttempts;
+
+    private MicroBatchWriter<Object[]> stockQuoteWriter;
+    private MicroBatchWriter<BarSeries> historicalDataWriter;
+
+    private IngestionJournal journal;
+    private ScheduledExecutorService journalReplayer;
+    // Journal entries whose insert failed (or that were recovered on startup), waiting for the next replay
+    private final Set<Long> pendingReplay = ConcurrentHashMap.newKeySet();
+    // Replays per journal entry in this run, cleared when the entry is acknowledged
+    private final Map<Long, Integer> replayAttempts = new ConcurrentHashMap<>();
+    // During a ClickHouse outage every buffered write fails; clickhouse.insert.failures has the count
+    private final LogSampler replayLogSampler = new LogSampler(5, 10_000);
+
+    /**
+     * Creates the tables, then the write buffers flushing into them, then opens the journal, whose replay
+     * submits to the buffers.
+     */
     @PostConstruct
-    public void initializeDatabase() {
+    public void initialize() {
+        initializeDatabase();
+        initializeWriteBuffers();
+        if (journalEnabled) {
+            openJournal();
+        }
+    }
+
+    private void initializeWriteBuffers() {
+        stockQuoteWriter = new MicroBatchWriter<>("stock_quotes", this::flushStockQuotes,
+                row -> 1, row -> STOCK_QUOTE_ROW_BYTES,
+                bufferMaxRows, bufferMaxBytes, bufferMaxDelayMs, bufferCapacityRows, bufferOfferTimeoutMs, meterRegistry);
+        historicalDataWriter = new MicroBatchWriter<>("stock_historical_data", this::flushHistoricalData,
+                BarSeries::size, BarSeries::estimatedHeapBytes,
+                bufferMaxRows, bufferMaxBytes, bufferMaxDelayMs, bufferCapacityRows, bufferOfferTimeoutMs, meterRegistry);
+    }
+
+    @PreDestroy
+    public void drainWriteBuffers() {
+        if (journalReplayer != null) {
+            journalReplayer.shutdownNow();
+            // A replay in progress reads the journal and resubmits to the buffers closed below
+            try {
+                if (!journalReplayer.awaitTermination(bufferShutdownTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    logger.warn("Journal replay did not stop within {} ms", bufferShutdownTimeoutMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (stockQuoteWriter != null) {
+            stockQuoteWriter.close(bufferShutdownTimeoutMs);
+        }
+        if (historicalDataWriter != null) {
+            historicalDataWriter.close(bufferShutdownTimeoutMs);
+        }
+        // Closed after the buffers so the acks of their final flushes are recorded
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void openJournal() {
         try {
-            // Create stock_quotes table if it doesn't exist
+            journal = new IngestionJournal(Paths.get(journalDirectory), journalSegmentBytes, journalFsyncIntervalMs, meterRegistry);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open ingestion journal in " + journalDirectory, e);
+        }
+        pendingReplay.addAll(journal.unacknowledged());
+        journalReplayer = Executors.newSingleThreadScheduledExecutor(IngestionPipeline.namedThreads("journal-replay"));
+        journalReplayer.scheduleWithFixedDelay(this::replayJournal, journalReplayIntervalMs, journalReplayIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays entries left in the journal by a previous run once the application (and its tables) are ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayJournalOnStartup() {
+        if (journal != null && !pendingReplay.isEmpty()) {
+            logger.info("Found {} unacknowledged journal entries from a previous run", pendingReplay.size());
+            journalReplayer.execute(this::replayJournal);
+        }
+    }
+
+    private void initializeDatabase() {
+        try {
+            if (isDedupSchema()) {
+                initializeDedupTables();
+            } else {
+                initializeLegacyTables();
+            }
+
+            // Create quote_watchlist table if it doesn't exist; the latest row per symbol wins
             clickHouseJdbcTemplate.execute("""
-            CREATE TABLE IF NOT EXISTS stock_quotes (
+            CREATE TABLE IF NOT EXISTS quote_watchlist (
                 symbol String,
-                name String,
-                currency String,
-                stock_exchange String,
-                quote_price Decimal(20, 8),
-                ask Decimal(20, 8),
-                bid Decimal(20, 8),
-                day_low Decimal(20, 8),
-                day_high Decimal(20, 8),
-                year_low Decimal(20, 8),
-                year_high Decimal(20, 8),
-                volume Int64,
-                market_cap Int64,
-                last_trade_time DateTime,
-                fetch_time DateTime DEFAULT now()
-            ) ENGINE = MergeTree() ORDER BY (symbol, last_trade_time)
+                tier String,
+                interval_seconds UInt32,
+                active UInt8,
+                updated_at DateTime64(3) DEFAULT now64(3)
+            ) ENGINE = ReplacingMergeTree(updated_at) ORDER BY symbol
             """);
-            logger.info("Table 'stock_quotes' checked/created successfully.");
+            logger.info("Table 'quote_watchlist' checked/created successfully.");
 
-            // Create stock_historical_data table if it doesn't exist
+            // Cluster membership leases (ingestion.cluster.enabled): one row per heartbeat, the latest row per
+            // node wins; heartbeat times come from the server clock so node clocks do not need to agree
             clickHouseJdbcTemplate.execute("""
-            CREATE TABLE IF NOT EXISTS stock_historical_data (
+            CREATE TABLE IF NOT EXISTS ingestion_node_leases (
+                node_id String,
+                active UInt8,
+                heartbeat DateTime64(3) DEFAULT now64(3)
+            ) ENGINE = ReplacingMergeTree(heartbeat) ORDER BY node_id
+            TTL toDateTime(heartbeat) + INTERVAL 1 DAY
+            """);
+            logger.info("Table 'ingestion_node_leases' checked/created successfully.");
+
+            // Derived features (ingestion.derived.enabled); recomputed rows replace older ones on merge
+            clickHouseJdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS stock_derived_data (
                 symbol String,
                 date DateTime,
-                open Decimal(20, 8),
-                high Decimal(20, 8),
-                low Decimal(20, 8),
-                close Decimal(20, 8),
-                adj_close Decimal(20, 8),
-                volume Int64,
-                fetch_time DateTime DEFAULT now()
-            ) ENGINE = MergeTree() ORDER BY (symbol, date)
+                adj_open Float64,
+                adj_high Float64,
+                adj_low Float64,
+                adj_close Float64,
+                simple_return Float64,
+                sma Float64,
+                ema Float64,
+                atr Float64,
+                volatility Float64,
+                computed_at DateTime64(3) DEFAULT now64(3)
+            ) ENGINE = ReplacingMergeTree(computed_at)
+            PARTITION BY toYYYYMM(date)
+            ORDER BY (symbol, date)
             """);
-            logger.info("Table 'stock_historical_data' checked/created successfully.");
+            logger.info("Table 'stock_derived_data' checked/created successfully.");
 
+        } catch (IllegalStateException e) {
+            // A failed schema migration must not go unnoticed behind a running application
+            throw e;
         } catch (Exception e) {
             logger.error("Error initializing ClickHouse tables: {}", e.getMessage(), e);
             // Depending on your application's needs, you might want to re-throw or handle this more gracefully
         }
     }
 
+    private boolean isDedupSchema() {
+        return "dedup".equalsIgnoreCase(schemaMode);
+    }
+
+    private void initializeLegacyTables() {
+        // Create stock_quotes table if it doesn't exist
+        clickHouseJdbcTemplate.execute("""
+        CREATE TABLE IF NOT EXISTS stock_quotes (
+            symbol String,
+            name String,
+            currency String,
+            stock_exchange String,
+            quote_price Decimal(20, 8),
+            ask Decimal(20, 8),
+            bid Decimal(20, 8),
+            day_low Decimal(20, 8),
+            day_high Decimal(20, 8),
+            year_low Decimal(20, 8),
+            year_high Decimal(20, 8),
+            volume Int64,
+            market_cap Int64,
+            last_trade_time DateTime,
+            fetch_time DateTime DEFAULT now()
+        ) ENGINE = MergeTree() ORDER BY (symbol, last_trade_time)
+        """);
+        logger.info("Table 'stock_quotes' checked/created successfully.");
+
+        // Create stock_historical_data table if it doesn't exist
+        clickHouseJdbcTemplate.execute("""
+        CREATE TABLE IF NOT EXISTS stock_historical_data (
+            symbol String,
+            date DateTime,
+            open Decimal(20, 8),
+            high Decimal(20, 8),
+            low Decimal(20, 8),
+            close Decimal(20, 8),
+            adj_close Decimal(20, 8),
+            volume Int64,
+            fetch_time DateTime DEFAULT now()
+        ) ENGINE = MergeTree() ORDER BY (symbol, date)
+        """);
+        logger.info("Table 'stock_historical_data' checked/created successfully.");
+    }
+
+    private void initializeDedupTables() {
+        initializeDedupTable("stock_quotes", DEDUP_STOCK_QUOTES_DDL, STOCK_QUOTE_COLUMNS);
+        initializeDedupTable("stock_historical_data", DEDUP_HISTORICAL_DATA_DDL, HISTORICAL_DATA_COLUMNS);
+
+        // Deduplicated views for ad-hoc and backtest queries that should not depend on merges having run
+        clickHouseJdbcTemplate.execute("""
+            CREATE VIEW IF NOT EXISTS stock_quotes_dedup AS
+            SELECT * FROM stock_quotes
+            ORDER BY symbol, last_trade_time, fetch_time DESC
+            LIMIT 1 BY symbol, last_trade_time
+            """);
+        clickHouseJdbcTemplate.execute("""
+            CREATE VIEW IF NOT EXISTS stock_historical_data_dedup AS
+            SELECT * FROM stock_historical_data
+            ORDER BY symbol, date, fetch_time DESC
+            LIMIT 1 BY symbol, date
+            """);
+        logger.info("Deduplicated views 'stock_quotes_dedup' and 'stock_historical_data_dedup' checked/created successfully.");
+    }
+
+    private void initializeDedupTable(String table, String ddl, String columns) {
+        String engine = getTableEngine(table);
+        if (engine == null) {
+            clickHouseJdbcTemplate.execute(ddl.formatted(table));
+            logger.info("Table '{}' created with the deduplicating schema.", table);
+        } else if ("ReplacingMergeTree".equals(engine)) {
+            logger.info("Table '{}' checked successfully (deduplicating schema).", table);
+        } else if (migrateSchema) {
+            migrateToDedupTable(table, ddl, columns);
+        } else {
+            logger.warn("Table '{}' uses {} and will keep duplicate rows; set clickhouse.schema.migrate=true to convert it", table, engine);
+        }
+    }
+
+    /**
+     * Copies a legacy table into a new deduplicating table and swaps the two. The old table is kept as
+     * {@code <table>_legacy_<epoch seconds>} and can be dropped once the new one has been checked. Runs during
+     * startup, before anything writes to the table.
+     * <p>
+     * The copy can take far longer than {@code clickhouse.timeout.query-seconds}, so it runs without the JDBC
+     * query timeout or {@code max_execution_time}, and with progress headers keeping the connection from hitting
+     * the socket timeout.
+     *
+     * @throws IllegalStateException if the migration fails; the legacy table is then left in place
+     */
+    private void migrateToDedupTable(String table, String ddl, String columns) {
+        String target = table + "_dedup_migration";
+        String backup = table + "_legacy_" + Instant.now().getEpochSecond();
+        JdbcTemplate untimed = new JdbcTemplate(clickHouseJdbcTemplate.getDataSource());
+        logger.info("Migrating table '{}' to the deduplicating schema...", table);
+        long start = System.nanoTime();
+        try {
+            untimed.execute("DROP TABLE IF EXISTS " + target);
+            untimed.execute(ddl.formatted(target));
+            untimed.execute("INSERT INTO " + target + " (" + columns + ") SELECT " + columns + " FROM " + table
+                    + " SETTINGS max_execution_time = 0, send_progress_in_http_headers = 1, http_headers_progress_interval_ms = 10000");
+            untimed.execute("RENAME TABLE " + table + " TO " + backup + ", " + target + " TO " + table);
+        } catch (DataAccessException e) {
+            throw new IllegalStateException("Migrating table '" + table + "' to the deduplicating schema failed", e);
+        }
+        Long rows = clickHouseJdbcTemplate.queryForObject("SELECT count() FROM " + table, Long.class);
+        logger.info("Migrated table '{}' ({} rows) in {}ms; previous table kept as '{}'", table, rows,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), backup);
+    }
+
+    private String getTableEngine(String table) {
+        List<String> engines = clickHouseJdbcTemplate.queryForList(
+                "SELECT engine FROM system.tables WHERE database = currentDatabase() AND name = ?", String.class, table);
+        return engines.isEmpty() ? null : engines.get(0);
+    }
+
     public void saveStockQuote(Stock stock) {
         if (stock == null || stock.getQuote() == null) {
             logger.warn("Stock or stock quote is null, skipping save for symbol: {}", stock != null ? stock.getSymbol() : "Unknown");
             return;
         }
 
-        String sql = "INSERT INTO stock_quotes (symbol, name, currency, stock_exchange, quote_price, ask, bid, day_low, day_high, year_low, year_high, volume, market_cap, last_trade_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        
+        Object[] row = buildStockQuoteRow(stock);
+        long sequence = appendToJournal(JournalCodec.TYPE_STOCK_QUOTE, row, JournalCodec::encodeStockQuoteRow);
+        long start = System.nanoTime();
         try {
-            clickHouseJdbcTemplate.update(sql,
-                stock.getSymbol(),
-                stock.getName(),
-                stock.getCurrency(),
-                stock.getStockExchange(),
-                stock.getQuote().getPrice(),
-                stock.getQuote().getAsk(),
-                stock.getQuote().getBid(),
-                stock.getQuote().getDayLow(),
-                stock.getQuote().getDayHigh(),
-                stock.getQuote().getYearLow(),
-                stock.getQuote().getYearHigh(),
-                stock.getQuote().getVolume(),
-                stock.getStats().getMarketCap() != null ? stock.getStats().getMarketCap().longValue() : null,
-                stock.getQuote().getLastTradeTime() != null ? new Timestamp(stock.getQuote().getLastTradeTime().getTimeInMillis()) : null
-            );
-            logger.info("Saved stock quote for: {}", stock.getSymbol());
+            clickHouseJdbcTemplate.update(INSERT_STOCK_QUOTE_SQL, row);
+            recordInsert("stock_quotes", "jdbc", start, 1, -1, null);
+            acknowledge(sequence);
+            logger.debug("Saved stock quote for: {}", stock.getSymbol());
         } catch (Exception e) {
+            recordInsert("stock_quotes", "jdbc", start, 0, -1, e);
+            keepForReplay(sequence);
             logger.error("Error saving stock quote for {}: {}", stock.getSymbol(), e.getMessage(), e);
         }
     }
 
+    /**
+     * Queues a stock quote on the write-behind buffer instead of inserting it immediately.
+     *
+     * @return a future completed once the buffered batch containing the quote has been inserted
+     */
+    public CompletableFuture<Void> saveStockQuoteAsync(Stock stock) {
+        if (stock == null || stock.getQuote() == null) {
+            logger.warn("Stock or stock quote is null, skipping save for symbol: {}", stock != null ? stock.getSymbol() : "Unknown");
+            return CompletableFuture.completedFuture(null);
+        }
+        Object[] row = buildStockQuoteRow(stock);
+        long sequence = appendToJournal(JournalCodec.TYPE_STOCK_QUOTE, row, JournalCodec::encodeStockQuoteRow);
+        return trackJournaled(sequence, stockQuoteWriter.submit(row));
+    }
+
     public void saveHistoricalData(String symbol, List<HistoricalQuote> historicalQuotes) {
         if (historicalQuotes == null || historicalQuotes.isEmpty()) {
             logger.warn("Historical data is null or empty for symbol: {}, skipping save.", symbol);
             return;
         }
+        saveHistoricalBars(BarSeries.fromHistoricalQuotes(symbol, historicalQuotes));
+    }
 
-        String sql = "INSERT INTO stock_historical_data (symbol, date, open, high, low, close, adj_close, volume) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    public void saveHistoricalBars(BarSeries bars) {
+        if (bars == null || bars.isEmpty()) {
+            logger.warn("Historical data is null or empty for symbol: {}, skipping save.", bars != null ? bars.getSymbol() : "Unknown");
+            return;
+        }
 
-        List<Object[]> batchArgs = new ArrayList<>();
-        for (HistoricalQuote hq : historicalQuotes) {
-            if (hq.getDate() == null) continue; // Skip if date is null
+        long sequence = appendToJournal(JournalCodec.TYPE_HISTORICAL_BARS, bars, JournalCodec::encodeBarSeries);
+        try {
+            insertHistoricalData(List.of(bars));
+            acknowledge(sequence);
+            logger.debug("Saved {} historical data points for: {}", bars.size(), bars.getSymbol());
+        } catch (Exception e) {
+            keepForReplay(sequence);
+            logger.error("Error saving historical data for {}: {}", bars.getSymbol(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Queues historical bars on the write-behind buffer instead of inserting them immediately.
+     *
+     * @return a future completed once the buffered batch containing the bars has been inserted
+     */
+    public CompletableFuture<Void> saveHistoricalBarsAsync(BarSeries bars) {
+        if (bars == null || bars.isEmpty()) {
+            logger.warn("Historical data is null or empty for symbol: {}, skipping save.", bars != null ? bars.getSymbol() : "Unknown");
+            return CompletableFuture.completedFuture(null);
+        }
+        long sequence = appendToJournal(JournalCodec.TYPE_HISTORICAL_BARS, bars, JournalCodec::encodeBarSeries);
+        return trackJournaled(sequence, historicalDataWriter.submit(bars));
+    }
+
+    /**
+     * Records data in the journal before it is written.
+     *
+     * @return the journal sequence number, or -1 when the journal is disabled
+     */
+    private <T> long appendToJournal(byte type, T data, Function<T, byte[]> encoder) {
+        return journal != null ? journal.append(type, encoder.apply(data)) : -1;
+    }
+
+    private void acknowledge(long sequence) {
+        if (sequence >= 0) {
+            journal.ack(sequence);
+            replayAttempts.remove(sequence);
+        }
+    }
+
+    private void keepForReplay(long sequence) {
+        if (sequence >= 0) {
+            pendingReplay.add(sequence);
+            long suppressed = replayLogSampler.sample();
+            if (suppressed >= 0) {
+                logger.warn("Write failed; journal entry {} kept for replay ({} entries pending, {} similar messages suppressed)",
+                        sequence, pendingReplay.size(), suppressed);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> trackJournaled(long sequence, CompletableFuture<Void> written) {
+        if (sequence < 0) {
+            return written;
+        }
+        return written.whenComplete((ignored, ex) -> {
+            if (ex == null) {
+                acknowledge(sequence);
+            } else {
+                keepForReplay(sequence);
+            }
+        });
+    }
+
+    /**
+     * Resubmits journal entries whose write failed, once ClickHouse answers again. Entries that fail again stay
+     * in the journal for the next attempt.
+     */
+    private void replayJournal() {
+        if (pendingReplay.isEmpty()) {
+            return;
+        }
+        try {
+            clickHouseJdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        } catch (Exception e) {
+            logger.debug("ClickHouse still unavailable, {} journal entries waiting for replay: {}", pendingReplay.size(), e.getMessage());
+            return;
+        }
+
+        List<Long> sequences = new ArrayList<>(pendingReplay);
+        Collections.sort(sequences);
+        logger.info("Replaying {} journal entries", sequences.size());
+        for (Long sequence : sequences) {
+            pendingReplay.remove(sequence);
+            IngestionJournal.Entry entry = journal.read(sequence);
+            if (entry == null) {
+                replayAttempts.remove(sequence);
+                continue; // Acknowledged in the meantime
+            }
+            int attempts = replayAttempts.merge(sequence, 1, Integer::sum);
+            if (attempts > journalReplayMaxAttempts) {
+                // Data ClickHouse keeps rejecting would otherwise be resubmitted forever
+                deadLetter(sequence, "failed " + journalReplayMaxAttempts + " replays");
+                continue;
+            }
+            if (entry.getType() == JournalCodec.TYPE_STOCK_QUOTE) {
+                trackJournaled(sequence, stockQuoteWriter.submit(JournalCodec.decodeStockQuoteRow(entry.getPayload())));
+            } else if (entry.getType() == JournalCodec.TYPE_HISTORICAL_BARS) {
+                trackJournaled(sequence, historicalDataWriter.submit(JournalCodec.decodeBarSeries(entry.getPayload())));
+            } else {
+                deadLetter(sequence, "unknown type " + entry.getType());
+            }
+        }
+    }
+
+    private void deadLetter(long sequence, String reason) {
+        replayAttempts.remove(sequence);
+        if (journal.deadLetter(sequence)) {
+            logger.warn("Moved journal entry {} to the dead-letter directory: {}", sequence, reason);
+        }
+    }
+
+    private Object[] buildStockQuoteRow(Stock stock) {
+        return new Object[]{
+            stock.getSymbol(),
+            stock.getName(),
+            stock.getCurrency(),
+            stock.getStockExchange(),
+            stock.getQuote().getPrice(),
+            stock.getQuote().getAsk(),
+            stock.getQuote().getBid(),
+            stock.getQuote().getDayLow(),
+            stock.getQuote().getDayHigh(),
+            stock.getQuote().getYearLow(),
+            stock.getQuote().getYearHigh(),
+            stock.getQuote().getVolume(),
+            stock.getStats().getMarketCap() != null ? stock.getStats().getMarketCap().longValue() : null,
+            stock.getQuote().getLastTradeTime() != null ? new Timestamp(stock.getQuote().getLastTradeTime().getTimeInMillis()) : null
+        };
+    }
+
+    /**
+     * Builds JDBC batch parameters for {@link #INSERT_HISTORICAL_DATA_SQL}.
+     */
+    public static List<Object[]> buildHistoricalRows(BarSeries bars) {
+        List<Object[]> batchArgs = new ArrayList<>(bars.size());
+        for (int i = 0; i < bars.size(); i++) {
             Object[] params = new Object[]{
-                symbol,
-                new Timestamp(hq.getDate().getTimeInMillis()),
-                hq.getOpen(),
-                hq.getHigh(),
-                hq.getLow(),
-                hq.getClose(),
-                hq.getAdjClose(),
-                hq.getVolume()
+                bars.getSymbol(),
+                new Timestamp(bars.getEpochMillis(i)),
+                BarSeries.toBigDecimal(bars.getOpen(i)),
+                BarSeries.toBigDecimal(bars.getHigh(i)),
+                BarSeries.toBigDecimal(bars.getLow(i)),
+                BarSeries.toBigDecimal(bars.getClose(i)),
+                BarSeries.toBigDecimal(bars.getAdjClose(i)),
+                bars.getVolume(i)
             };
             batchArgs.add(params);
         }
-        
+        return batchArgs;
+    }
+
+    private void flushStockQuotes(List<Object[]> rows) {
+        long start = System.nanoTime();
         try {
-            if (!batchArgs.isEmpty()) {
-                clickHouseJdbcTemplate.batchUpdate(sql, batchArgs);
-                logger.info("Saved {} historical data points for: {}", batchArgs.size(), symbol);
+            clickHouseJdbcTemplate.batchUpdate(INSERT_STOCK_QUOTE_SQL, rows);
+        } catch (RuntimeException e) {
+            recordInsert("stock_quotes", "jdbc", start, 0, -1, e);
+            throw e;
+        }
+        recordInsert("stock_quotes", "jdbc", start, rows.size(), -1, null);
+        logger.debug("Saved {} buffered stock quotes", rows.size());
+    }
+
+    private void flushHistoricalData(List<BarSeries> seriesList) {
+        int rows = insertHistoricalData(seriesList);
+        logger.debug("Saved {} buffered historical data points for {} symbols", rows, seriesList.size());
+    }
+
+    /**
+     * Inserts historical bars through the RowBinary path, or through JDBC when
+     * {@code clickhouse.insert.mode=jdbc}.
+     *
+     * @return number of rows inserted
+     */
+    private int insertHistoricalData(List<BarSeries> seriesList) {
+        int rowCount = 0;
+        for (BarSeries series : seriesList) {
+            rowCount += series.size();
+        }
+        boolean jdbc = "jdbc".equalsIgnoreCase(insertMode);
+        String path = jdbc ? "jdbc" : "rowbinary";
+        long start = System.nanoTime();
+        long bytes = -1;
+        try {
+            if (jdbc) {
+                List<Object[]> rows = new ArrayList<>(rowCount);
+                for (BarSeries series : seriesList) {
+                    rows.addAll(buildHistoricalRows(series));
+                }
+                clickHouseJdbcTemplate.batchUpdate(INSERT_HISTORICAL_DATA_SQL, rows);
+            } else {
+                bytes = rowBinaryWriter.insertHistoricalData(seriesList);
+                logger.debug("RowBinary insert of {} historical rows sent {} bytes", rowCount, bytes);
             }
-        } catch (Exception e) {
-            logger.error("Error saving historical data for {}: {}", symbol, e.getMessage(), e);
+        } catch (IOException e) {
+            recordInsert(ClickHouseRowBinaryWriter.HISTORICAL_DATA_TABLE, path, start, 0, -1, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            recordInsert(ClickHouseRowBinaryWriter.HISTORICAL_DATA_TABLE, path, start, 0, -1, e);
+            throw e;
+        }
+        recordInsert(ClickHouseRowBinaryWriter.HISTORICAL_DATA_TABLE, path, start, rowCount, bytes, null);
+        for (BarSeries series : seriesList) {
+            eventPublisher.publishEvent(new HistoricalDataWrittenEvent(series));
+        }
+        return rowCount;
+    }
+
+    /**
+     * Records one insert request: latency under clickhouse.insert.latency (tagged table, path and outcome), and
+     * for successful inserts the rows and, where known, the uncompressed payload bytes.
+     */
+    private void recordInsert(String table, String path, long startNanos, long rows, long bytes, Exception failure) {
+        Timer.builder("clickhouse.insert.latency")
+                .description("ClickHouse insert request latency")
+                .tag("table", table)
+                .tag("path", path)
+                .tag("outcome", failure == null ? "success" : "failure")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (failure != null) {
+            Counter.builder("clickhouse.insert.failures")
+                    .tag("table", table)
+                    .tag("path", path)
+                    .tag("exception", failure.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+            return;
+        }
+        Counter.builder("clickhouse.insert.rows").tag("table", table).tag("path", path).register(meterRegistry).increment(rows);
+        if (bytes >= 0) {
+            DistributionSummary.builder("clickhouse.insert.bytes")
+                    .description("Uncompressed payload bytes per insert request")
+                    .baseUnit("bytes")
+                    .tag("table", table)
+                    .tag("path", path)
+                    .register(meterRegistry)
+                    .record(bytes);
+        }
+    }
+
+    /**
+     * Loads the active watchlist entries, taking the most recent row for each symbol.
+     */
+    public List<WatchlistEntry> loadWatchlist() {
+        return clickHouseJdbcTemplate.query("""
+            SELECT symbol, argMax(tier, updated_at) AS tier, argMax(interval_seconds, updated_at) AS interval_seconds
+            FROM quote_watchlist
+            GROUP BY symbol
+            HAVING argMax(active, updated_at) = 1
+            ORDER BY symbol
+            """, (rs, rowNum) -> new WatchlistEntry(rs.getString("symbol"), rs.getString("tier"), rs.getInt("interval_seconds")));
+    }
+
+    public void saveWatchlistEntries(List<WatchlistEntry> entries) {
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        for (WatchlistEntry entry : entries) {
+            rows.add(new Object[]{entry.getSymbol(), entry.getTier() != null ? entry.getTier() : "", entry.getIntervalSeconds(), 1});
+        }
+        clickHouseJdbcTemplate.batchUpdate(INSERT_WATCHLIST_SQL, rows);
+        logger.info("Saved {} watchlist entries", entries.size());
+    }
+
+    /**
+     * Marks a symbol as removed; the row is kept so the removal survives merges and restarts.
+     */
+    public void removeWatchlistEntry(String symbol) {
+        clickHouseJdbcTemplate.update(INSERT_WATCHLIST_SQL, symbol, "", 0, 0);
+        logger.info("Removed {} from the watchlist", symbol);
+    }
+
+    /**
+     * Renews (or with {@code active=false}, releases) the cluster lease of a node.
+     */
+    public void renewNodeLease(String nodeId, boolean active) {
+        clickHouseJdbcTemplate.update("INSERT INTO ingestion_node_leases (node_id, active) VALUES (?, ?)", nodeId, active ? 1 : 0);
+    }
+
+    /**
+     * Nodes whose latest lease is active and was renewed within the last {@code leaseTimeoutMs}, by server time.
+     */
+    public List<String> loadLiveNodes(long leaseTimeoutMs) {
+        return clickHouseJdbcTemplate.queryForList("""
+            SELECT node_id
+            FROM ingestion_node_leases
+            GROUP BY node_id
+            HAVING argMax(active, heartbeat) = 1 AND max(heartbeat) >= now64(3) - toIntervalMillisecond(?)
+            ORDER BY node_id
+            """, String.class, leaseTimeoutMs);
+    }
+
+    /**
+     * Reads the last {@code limit} derived rows of each symbol before its own cutoff in {@code before}, oldest
+     * first, keeping the most recently computed row per date. Symbols are grouped into one query per batch;
+     * a symbol without derived rows gets an empty series.
+     */
+    public Map<String, DerivedSeries> getDerivedHistories(Map<String, Instant> before, int limit) {
+        Map<String, List<Long>> times = new HashMap<>();
+        Map<String, List<double[]>> rows = new HashMap<>();
+        List<String> symbols = new ArrayList<>(before.keySet());
+        for (int offset = 0; offset < symbols.size(); offset += highWaterMarkBatchSize) {
+            List<String> batch = symbols.subList(offset, Math.min(offset + highWaterMarkBatchSize, symbols.size()));
+            List<Object> args = new ArrayList<>(batch.size() * 2 + 1);
+            for (String symbol : batch) {
+                args.add(symbol);
+                args.add(Timestamp.from(before.get(symbol)));
+            }
+            args.add(limit);
+            String sql = SELECT_DERIVED_HISTORY_GROUPED_SQL.formatted(anyOf(batch.size(), "symbol = ? AND date < ?"));
+            clickHouseJdbcTemplate.query(sql, rs -> {
+                String symbol = rs.getString("symbol");
+                times.computeIfAbsent(symbol, s -> new ArrayList<>(limit)).add(rs.getTimestamp("date").getTime());
+                rows.computeIfAbsent(symbol, s -> new ArrayList<>(limit)).add(new double[]{
+                    rs.getDouble("adj_open"), rs.getDouble("adj_high"), rs.getDouble("adj_low"), rs.getDouble("adj_close"),
+                    rs.getDouble("simple_return"), rs.getDouble("sma"), rs.getDouble("ema"), rs.getDouble("atr"), rs.getDouble("volatility")
+                });
+            }, args.toArray());
+        }
+
+        Map<String, DerivedSeries> histories = new HashMap<>();
+        for (String symbol : symbols) {
+            List<Long> symbolTimes = times.getOrDefault(symbol, Collections.emptyList());
+            List<double[]> symbolRows = rows.getOrDefault(symbol, Collections.emptyList());
+            int n = symbolRows.size();
+            DerivedSeries history = new DerivedSeries(symbol, n);
+            for (int i = 0; i < n; i++) {
+                // Rows come newest first
+                int row = n - 1 - i;
+                double[] values = symbolRows.get(row);
+                history.epochMillis()[i] = symbolTimes.get(row);
+                history.adjOpen()[i] = values[0];
+                history.adjHigh()[i] = values[1];
+                history.adjLow()[i] = values[2];
+                history.adjClose()[i] = values[3];
+                history.returns()[i] = values[4];
+                history.sma()[i] = values[5];
+                history.ema()[i] = values[6];
+                history.atr()[i] = values[7];
+                history.volatility()[i] = values[8];
+            }
+            histories.put(symbol, history);
+        }
+        logger.debug("Read derived rows for {} symbols ({} with stored rows)", symbols.size(), times.size());
+        return histories;
+    }
+
+    /**
+     * Reads stored bars for {@code [from, to)}, keeping only the most recently fetched row for each date so
+     * re-ingested data is returned once even before ClickHouse has merged the duplicates away.
+     */
+    public BarSeries getHistoricalBars(String symbol, Instant from, Instant to) {
+        BarSeries series = new BarSeries(symbol);
+        clickHouseJdbcTemplate.query(SELECT_HISTORICAL_BARS_SQL, rs -> {
+            series.add(rs.getTimestamp("date").getTime(),
+                    BarSeries.toScaled(rs.getBigDecimal("open")),
+                    BarSeries.toScaled(rs.getBigDecimal("high")),
+                    BarSeries.toScaled(rs.getBigDecimal("low")),
+                    BarSeries.toScaled(rs.getBigDecimal("close")),
+                    BarSeries.toScaled(rs.getBigDecimal("adj_close")),
+                    rs.getLong("volume"));
+        }, symbol, Timestamp.from(from), Timestamp.from(to));
+        logger.debug("Read {} historical bars for {} between {} and {}", series.size(), symbol, from, to);
+        return series;
+    }
+
+    /**
+     * Grouped {@link #getHistoricalBars(String, Instant, Instant)}: the bars of each symbol of {@code from} in
+     * its own {@code [from, to)} range, in one query per batch of symbols. Every symbol is in the result, with an
+     * empty series if it has no bars in its range.
+     */
+    public Map<String, BarSeries> getHistoricalBars(Map<String, Instant> from, Map<String, Instant> to) {
+        Map<String, BarSeries> bars = new HashMap<>();
+        List<String> symbols = new ArrayList<>(from.keySet());
+        for (String symbol : symbols) {
+            bars.put(symbol, new BarSeries(symbol));
+        }
+        for (int offset = 0; offset < symbols.size(); offset += highWaterMarkBatchSize) {
+            List<String> batch = symbols.subList(offset, Math.min(offset + highWaterMarkBatchSize, symbols.size()));
+            List<Object> args = new ArrayList<>(batch.size() * 3);
+            for (String symbol : batch) {
+                args.add(symbol);
+                args.add(Timestamp.from(from.get(symbol)));
+                args.add(Timestamp.from(to.get(symbol)));
+            }
+            String sql = SELECT_HISTORICAL_BARS_GROUPED_SQL.formatted(anyOf(batch.size(), "symbol = ? AND date >= ? AND date < ?"));
+            clickHouseJdbcTemplate.query(sql, rs -> {
+                bars.get(rs.getString("symbol")).add(rs.getTimestamp("date").getTime(),
+                        BarSeries.toScaled(rs.getBigDecimal("open")),
+                        BarSeries.toScaled(rs.getBigDecimal("high")),
+                        BarSeries.toScaled(rs.getBigDecimal("low")),
+                        BarSeries.toScaled(rs.getBigDecimal("close")),
+                        BarSeries.toScaled(rs.getBigDecimal("adj_close")),
+                        rs.getLong("volume"));
+            }, args.toArray());
+        }
+        logger.debug("Read historical bars for {} symbols", symbols.size());
+        return bars;
+    }
+
+    /**
+     * {@code (condition) OR (condition) ...}, {@code count} times.
+     */
+    private static String anyOf(int count, String condition) {
+        return String.join(" OR ", Collections.nCopies(count, "(" + condition + ")"));
+    }
+
+    /**
+     * Returns the latest stored bar date for each symbol that has historical data.
+     * Symbols without any stored bars are absent from the result. Lookups are grouped
+     * into one query per batch of symbols.
+     *
+     * @throws DataAccessException if a lookup fails; an incremental run must not mistake that for
+     * symbols without stored data and re-fetch their whole history
+     */
+    public Map<String, Instant> getLatestHistoricalDates(Collection<String> symbols) {
+        if (symbols == null || symbols.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        List<String> symbolList = new ArrayList<>(symbols);
+        Map<String, Instant> latestDates = new HashMap<>();
+        for (int offset = 0; offset < symbolList.size(); offset += highWaterMarkBatchSize) {
+            List<String> batch = symbolList.subList(offset, Math.min(offset + highWaterMarkBatchSize, symbolList.size()));
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            String sql = "SELECT symbol, max(date) AS latest_date FROM stock_historical_data WHERE symbol IN (" + placeholders + ") GROUP BY symbol";
+            clickHouseJdbcTemplate.query(sql, rs -> {
+                Timestamp latest = rs.getTimestamp("latest_date");
+                if (latest != null) {
+                    latestDates.put(rs.getString("symbol"), latest.toInstant());
+                }
+            }, batch.toArray());
         }
+        logger.debug("Found stored historical data for {} of {} symbols", latestDates.size(), symbolList.size());
+        return latestDates;
     }
 }
@@ -0,0 +1,194 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the symbol universe between the running instances (cluster mode, {@code ingestion.cluster.enabled}).
+ * <p>
+ * ClickHouse is the coordinator: every node renews a lease in {@code ingestion_node_leases} each heartbeat and
+ * reads back the nodes whose lease is still fresh. Symbols are assigned with a {@link ConsistentHashRing} over
+ * those nodes, so all nodes agree on the owners without talking to each other. A node that stops renewing drops
+ * out after {@code lease-timeout-ms} and its symbols move to the survivors; one that shuts down cleanly releases
+ * its lease right away. Each node paces its Yahoo requests at {@code 1 / nodes} of the configured
+ * {@code yahoo.finance.rate.requests-per-second}, which is the budget for the whole cluster in this mode.
+ * <p>
+ * With cluster mode off every symbol is owned locally and nothing is written to ClickHouse.
+ */
+@Service
+public class ClusterCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    @Autowired
+    private ClickHouseService clickHouseService;
+
+    @Autowired
+    private YahooRequestScheduler requestScheduler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ingestion.cluster.node-id:}") // Defaults to <hostname>-<pid>
+    private String nodeId;
+
+    @Value("${ingestion.cluster.heartbeat-interval-ms:5000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${ingestion.cluster.lease-timeout-ms:20000}") // A node missing heartbeats this long is considered dead
+    private long leaseTimeoutMs;
+
+    @Value("${ingestion.cluster.virtual-nodes:128}") // Ring points per node; more points, more even shares
+    private int virtualNodes;
+
+    private volatile ConsistentHashRing ring;
+    // Bumped on every membership change, so callers can tell a rebalance happened while they worked
+    private volatile long membershipVersion;
+    private double globalRequestsPerSecond;
+    private long lastRenewedMs;
+    private ScheduledExecutorService heartbeats;
+    private Counter rebalances;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (nodeId == null || nodeId.trim().isEmpty()) {
+            nodeId = defaultNodeId();
+        }
+        globalRequestsPerSecond = requestScheduler.getRequestsPerSecond();
+        rebalances = Counter.builder("ingestion.cluster.rebalances").register(meterRegistry);
+        Gauge.builder("ingestion.cluster.nodes", this, c -> c.getLiveNodes().size()).register(meterRegistry);
+
+        heartbeat();
+        if (ring == null) {
+            // ClickHouse unreachable: work alone until the first successful heartbeat
+            ring = new ConsistentHashRing(List.of(nodeId), virtualNodes);
+        }
+        heartbeats = Executors.newSingleThreadScheduledExecutor(IngestionPipeline.namedThreads("cluster-heartbeat"));
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Cluster mode enabled as node '{}' (heartbeat every {}ms, lease timeout {}ms, cluster budget {} req/s)",
+                nodeId, heartbeatIntervalMs, leaseTimeoutMs, globalRequestsPerSecond);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeats == null) {
+            return;
+        }
+        heartbeats.shutdownNow();
+        try {
+            // Lets the peers take over this node's symbols on their next heartbeat instead of after the timeout
+            clickHouseService.renewNodeLease(nodeId, false);
+            logger.info("Released cluster lease of node '{}'", nodeId);
+        } catch (Exception e) {
+            logger.warn("Could not release cluster lease of node '{}': {}", nodeId, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public List<String> getLiveNodes() {
+        ConsistentHashRing current = ring;
+        return current != null ? current.getNodes() : List.of();
+    }
+
+    public long getMembershipVersion() {
+        return membershipVersion;
+    }
+
+    /**
+     * Whether this node is responsible for {@code symbol}; always true outside cluster mode.
+     */
+    public boolean owns(String symbol) {
+        if (!enabled) {
+            return true;
+        }
+        return nodeId.equals(ring.ownerOf(symbol));
+    }
+
+    /**
+     * The symbols of {@code symbols} this node is responsible for, in their original order.
+     */
+    public List<String> ownedSymbols(Collection<String> symbols) {
+        List<String> owned = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            if (owns(symbol)) {
+                owned.add(symbol);
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * Renews this node's lease and rebuilds the ring if the set of live nodes changed. When ClickHouse cannot
+     * be reached the last known ring is kept: peers may then take over this node's symbols as well, which
+     * duplicates work for a while but never leaves symbols unowned.
+     */
+    void heartbeat() {
+        List<String> live;
+        try {
+            clickHouseService.renewNodeLease(nodeId, true);
+            lastRenewedMs = System.currentTimeMillis();
+            live = clickHouseService.loadLiveNodes(leaseTimeoutMs);
+        } catch (Exception e) {
+            logger.warn("Cluster heartbeat of node '{}' failed, keeping {} known nodes (last renewed {}ms ago): {}",
+                    nodeId, getLiveNodes().size(), System.currentTimeMillis() - lastRenewedMs, e.getMessage());
+            return;
+        }
+        // Our own insert may not be visible yet on a lagging replica
+        TreeSet<String> nodes = new TreeSet<>(live);
+        nodes.add(nodeId);
+        if (ring != null && nodes.equals(new TreeSet<>(ring.getNodes()))) {
+            return;
+        }
+
+        List<String> previous = getLiveNodes();
+        ring = new ConsistentHashRing(nodes, virtualNodes);
+        membershipVersion++;
+        double share = globalRequestsPerSecond / nodes.size();
+        requestScheduler.setRequestsPerSecond(share);
+        if (!previous.isEmpty()) {
+            rebalances.increment();
+        }
+        logger.info("Cluster membership changed from {} to {}; node '{}' now paces Yahoo requests at {} req/s",
+                previous, nodes, nodeId, String.format("%.2f", share));
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
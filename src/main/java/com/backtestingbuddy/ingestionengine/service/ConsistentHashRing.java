@@ -0,0 +1,94 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring mapping symbols to node ids.
+ * <p>
+ * Every node is placed on the ring {@code virtualNodes} times; a symbol belongs to the first node point at or
+ * after its own hash. When a node joins or leaves, only the symbols between its points and their neighbours
+ * change owner, roughly {@code 1 / nodes} of the universe. Hashes are computed from the UTF-8 bytes, so every
+ * instance builds the same ring from the same node list.
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> nodes;
+    // Sorted point hashes and the node owning each point
+    private final long[] points;
+    private final String[] owners;
+
+    public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(nodeIds)));
+        int size = nodes.size() * virtualNodes;
+        long[] hashes = new long[size];
+        int[] nodeIndexes = new int[size];
+        int n = 0;
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                hashes[n] = hash(nodes.get(node) + "#" + replica);
+                nodeIndexes[n] = node;
+                n++;
+            }
+        }
+        // Sort point indexes by hash; ties (practically impossible) go to the lower node id
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b]) : Integer.compare(nodeIndexes[a], nodeIndexes[b]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = nodes.get(nodeIndexes[order[i]]);
+        }
+    }
+
+    /**
+     * @return the node owning {@code symbol}, or {@code null} if the ring is empty
+     */
+    public String ownerOf(String symbol) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(symbol));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes with a final avalanche step, so similar tickers spread over the ring.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,382 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.model.DerivedSeries;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post-ingest stage keeping {@code stock_derived_data} (adjusted OHLC, returns, SMA, EMA, ATR, volatility) up to
+ * date as historical bars are written ({@code ingestion.derived.enabled}).
+ * <p>
+ * Every insert through {@link ClickHouseService#saveHistoricalData} and the other historical write paths ends in
+ * a {@link HistoricalDataWrittenEvent}; the written bars are queued per symbol and processed every
+ * {@code flush-interval-ms}: symbols are spread over a fork-join pool, each continues from its in-memory
+ * {@link DerivedSeriesCalculator.RollingState}, and all resulting rows go to ClickHouse in one RowBinary insert.
+ * <p>
+ * Only new bars are computed. When a symbol has no state in memory (after a restart) it is restored from the last
+ * stored derived rows; only a symbol without enough derived rows yet (first run, or the stage was just enabled)
+ * is computed from the start of its stored history. Bars that rewrite the past, e.g. a full re-ingest with new
+ * split adjustments, are recomputed from the derived rows before them on. Changing the indicator periods does not
+ * rewrite existing rows. The stored rows and bars needed for this are read on the flush thread, grouped for all
+ * symbols of the flush, so the pool only does the computation.
+ */
+@Service
+public class DerivedDataService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DerivedDataService.class);
+
+    // Symbols computed sequentially by one fork-join leaf
+    private static final int SYMBOLS_PER_TASK = 4;
+
+    @Autowired
+    private ClickHouseService clickHouseService;
+
+    @Autowired
+    private ClickHouseRowBinaryWriter rowBinaryWriter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.derived.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ingestion.derived.sma-period:20}")
+    private int smaPeriod;
+
+    @Value("${ingestion.derived.ema-period:20}")
+    private int emaPeriod;
+
+    @Value("${ingestion.derived.atr-period:14}")
+    private int atrPeriod;
+
+    @Value("${ingestion.derived.volatility-period:20}")
+    private int volatilityPeriod;
+
+    @Value("${ingestion.derived.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${ingestion.derived.parallelism:0}") // 0 uses one thread per core
+    private int parallelism;
+
+    private DerivedSeriesCalculator calculator;
+    private ForkJoinPool pool;
+    private ScheduledExecutorService flusher;
+
+    // Written bars waiting to be processed, merged per symbol
+    private final Map<String, BarSeries> pending = new ConcurrentHashMap<>();
+    private final Map<String, DerivedSeriesCalculator.RollingState> states = new ConcurrentHashMap<>();
+
+    private Counter derivedRows;
+    private Counter failures;
+    private Timer batchLatency;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        calculator = new DerivedSeriesCalculator(smaPeriod, emaPeriod, atrPeriod, volatilityPeriod);
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        derivedRows = Counter.builder("derived.data.rows").register(meterRegistry);
+        failures = Counter.builder("derived.data.failures").register(meterRegistry);
+        batchLatency = Timer.builder("derived.data.batch.latency")
+                .description("Time to compute and insert one batch of derived rows")
+                .register(meterRegistry);
+        Gauge.builder("derived.data.pending.symbols", pending, Map::size).register(meterRegistry);
+        Gauge.builder("derived.data.tracked.symbols", states, Map::size).register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(IngestionPipeline.namedThreads("derived-data"));
+        flusher.scheduleWithFixedDelay(this::processPending, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Derived data stage enabled (SMA {}, EMA {}, ATR {}, volatility {} bars, parallelism {})",
+                smaPeriod, emaPeriod, atrPeriod, volatilityPeriod, pool.getParallelism());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Bars still pending are picked up after the restart, restored from the stored derived rows
+        if (!pending.isEmpty()) {
+            logger.info("Derived data stage stopped with {} symbols pending; they are computed with their next bars", pending.size());
+        }
+        pool.shutdown();
+    }
+
+    @EventListener
+    public void onHistoricalDataWritten(HistoricalDataWrittenEvent event) {
+        if (!enabled || event.getBars() == null || event.getBars().isEmpty()) {
+            return;
+        }
+        pending.merge(event.getSymbol(), sorted(event.getBars()), DerivedDataService::mergeBars);
+    }
+
+    void processPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<BarSeries> batch = new ArrayList<>(pending.size());
+        for (String symbol : new ArrayList<>(pending.keySet())) {
+            BarSeries bars = pending.remove(symbol);
+            if (bars != null) {
+                batch.add(bars);
+            }
+        }
+        long start = System.nanoTime();
+        List<DeriveJob> jobs = prepare(batch);
+        DerivedSeries[] results = new DerivedSeries[jobs.size()];
+        pool.invoke(new DeriveTask(jobs, results, 0, jobs.size()));
+
+        List<DerivedSeries> rows = new ArrayList<>(results.length);
+        long rowCount = 0;
+        for (DerivedSeries derived : results) {
+            if (derived != null && !derived.isEmpty()) {
+                rows.add(derived);
+                rowCount += derived.size();
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            long bytes = rowBinaryWriter.insertDerivedData(rows);
+            derivedRows.increment(rowCount);
+            batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            logger.debug("Wrote {} derived rows for {} symbols ({} bytes) in {}ms", rowCount, rows.size(), bytes,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            failures.increment();
+            logger.warn("Writing {} derived rows for {} symbols failed, retrying with the next batch: {}", rowCount, rows.size(), e.getMessage());
+            // The states already moved past the rows that were not stored; they are restored from the table on retry
+            for (DeriveJob job : jobs) {
+                states.remove(job.bars.getSymbol());
+                pending.merge(job.bars.getSymbol(), job.bars, DerivedDataService::mergeBars);
+            }
+        }
+    }
+
+    /**
+     * Pairs each symbol's new bars with the state to continue from. Symbols whose in-memory state is missing or
+     * newer than their bars are restored from ClickHouse with three grouped reads for the whole batch; if those
+     * fail, their bars are requeued and only the other symbols are computed.
+     */
+    private List<DeriveJob> prepare(List<BarSeries> batch) {
+        List<DeriveJob> jobs = new ArrayList<>(batch.size());
+        Map<String, BarSeries> cold = new LinkedHashMap<>();
+        Map<String, Instant> firstNew = new HashMap<>();
+        for (BarSeries bars : batch) {
+            String symbol = bars.getSymbol();
+            long first = bars.getEpochMillis(0);
+            DerivedSeriesCalculator.RollingState state = states.get(symbol);
+            if (state != null && first > state.getLastEpochMillis()) {
+                jobs.add(new DeriveJob(bars, bars, state, true));
+            } else {
+                states.remove(symbol);
+                cold.put(symbol, bars);
+                firstNew.put(symbol, Instant.ofEpochMilli(first));
+            }
+        }
+        if (cold.isEmpty()) {
+            return jobs;
+        }
+
+        try {
+            Map<String, Instant> latestStored = clickHouseService.getLatestHistoricalDates(cold.keySet());
+            Map<String, DerivedSeries> histories = clickHouseService.getDerivedHistories(firstNew, calculator.getWarmUpBars());
+            Map<String, DerivedSeriesCalculator.RollingState> restored = new HashMap<>();
+            Map<String, Instant> readFrom = new HashMap<>();
+            for (String symbol : cold.keySet()) {
+                DerivedSeriesCalculator.RollingState state = calculator.restore(histories.get(symbol));
+                restored.put(symbol, state);
+                // Without a usable state the symbol starts over from its first stored bar; otherwise the stored
+                // bars between the last derived row and this batch (dropped on shutdown or a failed write) are caught up
+                readFrom.put(symbol, state == null ? Instant.EPOCH : Instant.ofEpochMilli(state.getLastEpochMillis() + 1));
+            }
+            Map<String, BarSeries> earlier = clickHouseService.getHistoricalBars(readFrom, firstNew);
+
+            for (BarSeries bars : cold.values()) {
+                String symbol = bars.getSymbol();
+                BarSeries stored = earlier.get(symbol);
+                DerivedSeriesCalculator.RollingState state = restored.get(symbol);
+                if (state == null) {
+                    logger.debug("Computing derived data for {} from the start of its history ({} earlier bars)", symbol, stored.size());
+                    state = calculator.newState();
+                } else if (!stored.isEmpty()) {
+                    logger.debug("Catching up {} derived rows for {} before the new bars", stored.size(), symbol);
+                }
+                // Only keep the state if no stored bars come after it, otherwise the next batch would skip them
+                Instant latest = latestStored.get(symbol);
+                boolean keepState = latest == null || latest.toEpochMilli() <= bars.getEpochMillis(bars.size() - 1);
+                jobs.add(new DeriveJob(bars, stored.isEmpty() ? bars : mergeBars(stored, bars), state, keepState));
+            }
+        } catch (Exception e) {
+            failures.increment();
+            logger.warn("Reading the stored state of {} symbols failed, retrying with the next batch: {}", cold.size(), e.getMessage());
+            for (BarSeries bars : cold.values()) {
+                pending.merge(bars.getSymbol(), bars, DerivedDataService::mergeBars);
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Computes the derived rows of one symbol's new bars; runs on the pool and does no I/O.
+     */
+    private DerivedSeries derive(DeriveJob job) {
+        String symbol = job.bars.getSymbol();
+        try {
+            DerivedSeries derived = calculator.compute(job.input, job.state);
+            if (job.keepState) {
+                states.put(symbol, job.state);
+            }
+            return derived;
+        } catch (Exception e) {
+            failures.increment();
+            states.remove(symbol);
+            logger.warn("Computing derived data for {} failed, retrying with the next batch: {}", symbol, e.getMessage());
+            pending.merge(symbol, job.bars, DerivedDataService::mergeBars);
+            return null;
+        }
+    }
+
+    /**
+     * Merges two series sorted by time in one pass; where both have a bar for the same time, the one from
+     * {@code later} wins.
+     */
+    static BarSeries mergeBars(BarSeries earlier, BarSeries later) {
+        BarSeries merged = new BarSeries(later.getSymbol(), earlier.size() + later.size());
+        int i = 0;
+        int j = 0;
+        while (i < earlier.size() || j < later.size()) {
+            if (j == later.size() || (i < earlier.size() && earlier.getEpochMillis(i) < later.getEpochMillis(j))) {
+                addBar(merged, earlier, i++);
+            } else {
+                if (i < earlier.size() && earlier.getEpochMillis(i) == later.getEpochMillis(j)) {
+                    i++; // Replaced by the bar from later
+                }
+                addBar(merged, later, j++);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * The bars sorted by time, the last one winning for a repeated time. Series arrive sorted, anything else is
+     * split into its ascending runs and merged run by run.
+     */
+    static BarSeries sorted(BarSeries bars) {
+        int runEnd = runEnd(bars, 0);
+        if (runEnd == bars.size()) {
+            return bars;
+        }
+        BarSeries merged = slice(bars, 0, runEnd);
+        for (int start = runEnd; start < bars.size(); start = runEnd) {
+            runEnd = runEnd(bars, start);
+            merged = mergeBars(merged, slice(bars, start, runEnd));
+        }
+        return merged;
+    }
+
+    private static int runEnd(BarSeries bars, int start) {
+        int end = start + 1;
+        while (end < bars.size() && bars.getEpochMillis(end) > bars.getEpochMillis(end - 1)) {
+            end++;
+        }
+        return Math.min(end, bars.size());
+    }
+
+    private static BarSeries slice(BarSeries bars, int from, int to) {
+        BarSeries slice = new BarSeries(bars.getSymbol(), to - from);
+        for (int i = from; i < to; i++) {
+            addBar(slice, bars, i);
+        }
+        return slice;
+    }
+
+    private static void addBar(BarSeries target, BarSeries source, int i) {
+        target.add(source.getEpochMillis(i), source.getOpen(i), source.getHigh(i), source.getLow(i),
+                source.getClose(i), source.getAdjClose(i), source.getVolume(i));
+    }
+
+    /**
+     * One symbol's new bars, the bars to compute (the new ones plus any stored bars to catch up first) and the
+     * state to continue from.
+     */
+    private static final class DeriveJob {
+
+        private final BarSeries bars;
+        private final BarSeries input;
+        private final DerivedSeriesCalculator.RollingState state;
+        private final boolean keepState;
+
+        private DeriveJob(BarSeries bars, BarSeries input, DerivedSeriesCalculator.RollingState state, boolean keepState) {
+            this.bars = bars;
+            this.input = input;
+            this.state = state;
+            this.keepState = keepState;
+        }
+    }
+
+    /**
+     * Splits the jobs until a task holds at most {@value #SYMBOLS_PER_TASK} symbols. Every symbol is written to
+     * its own result slot, so the tasks share no state.
+     */
+    private final class DeriveTask extends RecursiveAction {
+
+        private final List<DeriveJob> batch;
+        private final DerivedSeries[] results;
+        private final int from;
+        private final int to;
+
+        private DeriveTask(List<DeriveJob> batch, DerivedSeries[] results, int from, int to) {
+            this.batch = batch;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SYMBOLS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    results[i] = derive(batch.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DeriveTask(batch, results, from, middle), new DeriveTask(batch, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.model.DerivedSeries;
+
+/**
+ * Incremental computation of adjusted prices and rolling indicators over {@link BarSeries} columns.
+ * <p>
+ * All indicators are carried in a {@link RollingState} between calls, so new bars only cost O(1) work each and
+ * nothing before them is reread:
+ * <ul>
+ *   <li>SMA: running sum over a ring buffer of the last {@code smaPeriod} adjusted closes</li>
+ *   <li>EMA: {@code alpha = 2 / (emaPeriod + 1)}, seeded with the first close, reported from bar {@code emaPeriod}</li>
+ *   <li>ATR: Wilder's smoothing, seeded with the mean true range of the first {@code atrPeriod} bars</li>
+ *   <li>volatility: sample standard deviation of the last {@code volatilityPeriod} returns, annualized with
+ *       {@value #PERIODS_PER_YEAR} periods</li>
+ * </ul>
+ * Rolling sums are recomputed from their buffer every time it wraps, so rounding errors do not accumulate over
+ * years of updates.
+ */
+final class DerivedSeriesCalculator {
+
+    static final int PERIODS_PER_YEAR = 252;
+    private static final double ANNUALIZATION = Math.sqrt(PERIODS_PER_YEAR);
+
+    private final int smaPeriod;
+    private final int emaPeriod;
+    private final int atrPeriod;
+    private final int volatilityPeriod;
+    private final double emaAlpha;
+
+    DerivedSeriesCalculator(int smaPeriod, int emaPeriod, int atrPeriod, int volatilityPeriod) {
+        if (smaPeriod < 1 || emaPeriod < 1 || atrPeriod < 1 || volatilityPeriod < 2) {
+            throw new IllegalArgumentException("Indicator periods must be positive (volatility at least 2)");
+        }
+        this.smaPeriod = smaPeriod;
+        this.emaPeriod = emaPeriod;
+        this.atrPeriod = atrPeriod;
+        this.volatilityPeriod = volatilityPeriod;
+        this.emaAlpha = 2.0 / (emaPeriod + 1);
+    }
+
+    /**
+     * Derived rows needed before a bar to continue from them with {@link #restore(DerivedSeries)}.
+     */
+    int getWarmUpBars() {
+        return Math.max(Math.max(smaPeriod, emaPeriod), Math.max(atrPeriod, volatilityPeriod + 1));
+    }
+
+    RollingState newState() {
+        return new RollingState(smaPeriod, volatilityPeriod);
+    }
+
+    /**
+     * Rebuilds the state after the last row of {@code history}, the stored derived rows just before the bars
+     * to compute, oldest first.
+     *
+     * @return the state, or {@code null} if there are too few rows or the indicators were still warming up, in
+     * which case the symbol has to be computed from the start of its history
+     */
+    RollingState restore(DerivedSeries history) {
+        int n = history.size();
+        if (n < getWarmUpBars()) {
+            return null;
+        }
+        int last = n - 1;
+        if (Double.isNaN(history.ema()[last]) || Double.isNaN(history.atr()[last])) {
+            return null;
+        }
+        RollingState state = newState();
+        double[] closes = history.adjClose();
+        for (int i = n - smaPeriod; i < n; i++) {
+            state.closes.add(closes[i]);
+        }
+        double[] returns = history.returns();
+        for (int i = n - volatilityPeriod; i < n; i++) {
+            if (Double.isNaN(returns[i])) {
+                return null;
+            }
+            state.returns.add(returns[i]);
+        }
+        state.bars = n;
+        state.lastEpochMillis = history.epochMillis()[last];
+        state.previousClose = closes[last];
+        state.ema = history.ema()[last];
+        state.atr = history.atr()[last];
+        return state;
+    }
+
+    /**
+     * Computes the derived rows of {@code bars}, which must be sorted by time and newer than
+     * {@code state.getLastEpochMillis()}, and advances {@code state} past them.
+     */
+    DerivedSeries compute(BarSeries bars, RollingState state) {
+        int n = bars.size();
+        DerivedSeries derived = new DerivedSeries(bars.getSymbol(), n);
+        long[] time = derived.epochMillis();
+        double[] open = derived.adjOpen();
+        double[] high = derived.adjHigh();
+        double[] low = derived.adjLow();
+        double[] close = derived.adjClose();
+
+        // Adjusted prices: independent per bar, a straight loop over the columns
+        for (int i = 0; i < n; i++) {
+            double rawClose = BarSeries.toDouble(bars.getClose(i));
+            double adjClose = BarSeries.toDouble(bars.getAdjClose(i));
+            // Bars without an adjusted close (or a close) are taken as unadjusted
+            double factor = rawClose > 0 && adjClose > 0 ? adjClose / rawClose : 1.0;
+            time[i] = bars.getEpochMillis(i);
+            open[i] = BarSeries.toDouble(bars.getOpen(i)) * factor;
+            high[i] = BarSeries.toDouble(bars.getHigh(i)) * factor;
+            low[i] = BarSeries.toDouble(bars.getLow(i)) * factor;
+            close[i] = rawClose * factor;
+        }
+
+        // Rolling indicators: each bar depends on the state left by the previous one
+        double[] returns = derived.returns();
+        double[] sma = derived.sma();
+        double[] ema = derived.ema();
+        double[] atr = derived.atr();
+        double[] volatility = derived.volatility();
+        for (int i = 0; i < n; i++) {
+            double c = close[i];
+            boolean first = state.bars == 0;
+            double previous = state.previousClose;
+
+            returns[i] = first || previous == 0 ? Double.NaN : c / previous - 1;
+            if (!Double.isNaN(returns[i])) {
+                state.returns.add(returns[i]);
+            }
+            volatility[i] = state.returns.isFull() ? state.returns.sampleStdDev() * ANNUALIZATION : Double.NaN;
+
+            state.closes.add(c);
+            sma[i] = state.closes.isFull() ? state.closes.mean() : Double.NaN;
+
+            state.ema = first ? c : state.ema + emaAlpha * (c - state.ema);
+            ema[i] = state.bars + 1 >= emaPeriod ? state.ema : Double.NaN;
+
+            double trueRange = high[i] - low[i];
+            if (!first) {
+                trueRange = Math.max(trueRange, Math.max(Math.abs(high[i] - previous), Math.abs(low[i] - previous)));
+            }
+            if (state.bars < atrPeriod) {
+                state.atr += trueRange / atrPeriod; // Mean of the first atrPeriod true ranges
+            } else {
+                state.atr += (trueRange - state.atr) / atrPeriod;
+            }
+            atr[i] = state.bars + 1 >= atrPeriod ? state.atr : Double.NaN;
+
+            state.previousClose = c;
+            state.lastEpochMillis = time[i];
+            state.bars++;
+        }
+        return derived;
+    }
+
+    /**
+     * Indicator state of one symbol after its last computed bar.
+     */
+    static final class RollingState {
+
+        private final RollingWindow closes;
+        private final RollingWindow returns;
+        private long bars;
+        private long lastEpochMillis = Long.MIN_VALUE;
+        private double previousClose;
+        private double ema;
+        private double atr;
+
+        private RollingState(int smaPeriod, int volatilityPeriod) {
+            this.closes = new RollingWindow(smaPeriod);
+            this.returns = new RollingWindow(volatilityPeriod);
+        }
+
+        long getLastEpochMillis() {
+            return lastEpochMillis;
+        }
+
+        long getBars() {
+            return bars;
+        }
+    }
+
+    /**
+     * Fixed-size ring buffer keeping the sum and sum of squares of its values.
+     */
+    static final class RollingWindow {
+
+        private final double[] values;
+        private int next;
+        private int count;
+        private double sum;
+        private double sumOfSquares;
+
+        RollingWindow(int size) {
+            this.values = new double[size];
+        }
+
+        void add(double value) {
+            if (count == values.length) {
+                double evicted = values[next];
+                sum -= evicted;
+                sumOfSquares -= evicted * evicted;
+            } else {
+                count++;
+            }
+            values[next] = value;
+            sum += value;
+            sumOfSquares += value * value;
+            if (++next == values.length) {
+                next = 0;
+                resum();
+            }
+        }
+
+        boolean isFull() {
+            return count == values.length;
+        }
+
+        double mean() {
+            return sum / count;
+        }
+
+        double sampleStdDev() {
+            double variance = (sumOfSquares - sum * sum / count) / (count - 1);
+            return variance > 0 ? Math.sqrt(variance) : 0.0;
+        }
+
+        private void resum() {
+            double s = 0;
+            double squares = 0;
+            for (int i = 0; i < count; i++) {
+                s += values[i];
+                squares += values[i] * values[i];
+            }
+            sum = s;
+            sumOfSquares = squares;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import yahoofinance.Stock;
+
+/**
+ * Data produced by the fetch stage of the {@link IngestionPipeline} and handed to the persist stage.
+ */
+public class FetchedSymbolData {
+
+    private final String symbol;
+    private final Stock quote;
+    private final BarSeries historicalBars;
+    private final String quoteError;
+
+    public FetchedSymbolData(String symbol, Stock quote, BarSeries historicalBars) {
+        this(symbol, quote, historicalBars, null);
+    }
+
+    /**
+     * @param quoteError why the quote could not be fetched, or {@code null}; the history is persisted regardless
+     */
+    public FetchedSymbolData(String symbol, Stock quote, BarSeries historicalBars, String quoteError) {
+        this.symbol = symbol;
+        this.quote = quote;
+        this.historicalBars = historicalBars;
+        this.quoteError = quoteError;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public Stock getQuote() {
+        return quote;
+    }
+
+    public BarSeries getHistoricalBars() {
+        return historicalBars;
+    }
+
+    public String getQuoteError() {
+        return quoteError;
+    }
+
+    public boolean hasQuote() {
+        return quote != null && quote.getQuote() != null;
+    }
+
+    public int getHistoricalRecordCount() {
+        return historicalBars != null ? historicalBars.size() : 0;
+    }
+
+    public boolean isEmpty() {
+        return !hasQuote() && getHistoricalRecordCount() == 0;
+    }
+}
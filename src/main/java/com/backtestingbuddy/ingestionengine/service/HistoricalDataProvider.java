@@ -0,0 +1,23 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import yahoofinance.histquotes.Interval;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source of historical bars. Implementations schedule their requests through {@link YahooRequestScheduler}
+ * themselves and complete with {@link com.backtestingbuddy.ingestionengine.exception.YahooFinanceException}
+ * (or its rate-limit subclass) when Yahoo answers with an error, and with an {@link java.io.IOException} when the
+ * request could not be sent or its response not read.
+ */
+public interface HistoricalDataProvider {
+
+    String getName();
+
+    /**
+     * Fetches the bars of {@code symbol} between {@code from} and {@code to}, ordered by date.
+     */
+    CompletableFuture<BarSeries> fetchHistoricalBars(String symbol, Instant from, Instant to, Interval interval);
+}
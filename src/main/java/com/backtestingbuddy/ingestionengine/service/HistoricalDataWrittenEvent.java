@@ -0,0 +1,40 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+
+/**
+ * Published by {@link ClickHouseService} after historical bars for a symbol have been inserted.
+ */
+public class HistoricalDataWrittenEvent {
+
+    private final String symbol;
+    private final long firstEpochMillis;
+    private final long lastEpochMillis;
+    private final BarSeries bars;
+
+    public HistoricalDataWrittenEvent(BarSeries bars) {
+        this.symbol = bars.getSymbol();
+        this.firstEpochMillis = bars.getFirstEpochMillis();
+        this.lastEpochMillis = bars.getLastEpochMillis();
+        this.bars = bars;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getFirstEpochMillis() {
+        return firstEpochMillis;
+    }
+
+    public long getLastEpochMillis() {
+        return lastEpochMillis;
+    }
+
+    /**
+     * The bars as written; listeners must not modify them.
+     */
+    public BarSeries getBars() {
+        return bars;
+    }
+}
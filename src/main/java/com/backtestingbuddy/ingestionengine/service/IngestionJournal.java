@@ -0,0 +1,510 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of data that has been fetched but not yet confirmed as stored.
+ * <p>
+ * Entries are appended to fixed-size memory-mapped segment files. Each record is
+ * {@code [int payloadLength][int crc32c][byte type][long sequence][payload]}, with the checksum covering
+ * type, sequence and payload; a zero length marks the end of the written part of a segment. Acknowledging an
+ * entry appends a small ack record, and segments are deleted from the oldest end once every entry in them has
+ * been acknowledged. When a segment rolls, old segments holding only a few live entries are compacted: those
+ * entries are copied, with their sequence numbers, into the active segment and the old segments are deleted,
+ * so a single entry that never succeeds does not keep every later segment on disk. Entries that are given up
+ * on are moved to a dead-letter directory by {@link #deadLetter(long)}. Writes land in the page cache
+ * immediately and are forced to disk by a background thread every {@code fsyncIntervalMs}, so one fsync
+ * covers all appends made in that window.
+ * <p>
+ * On open, existing segments are scanned up to the first torn or corrupt record, and every entry without a
+ * matching ack is reported by {@link #unacknowledged()} so it can be replayed.
+ */
+public class IngestionJournal implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionJournal.class);
+
+    public static final byte TYPE_ACK = 0;
+
+    static final int HEADER_BYTES = 4 + 4 + 1 + 8;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DEAD_LETTER_DIRECTORY = "dead-letter";
+    // Old segments whose live entries take at most this fraction of a segment are compacted on roll; during an
+    // outage segments are mostly live and are kept as they are rather than copied on every roll
+    private static final int COMPACTION_LIVE_DIVISOR = 4;
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    // Segments by first sequence number; the last one is the active segment
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // Unacknowledged data entries by sequence number
+    private final Map<Long, Location> unacked = new HashMap<>();
+    private Segment active;
+    private long nextSequence;
+    private boolean dirty;
+    private boolean closed;
+    private boolean compacting;
+
+    private final ScheduledExecutorService syncer;
+    private final Timer fsyncLatency;
+    private final Counter bytesAppended;
+    private final Counter entriesCompacted;
+    private final Counter entriesDeadLettered;
+
+    public IngestionJournal(Path directory, int segmentBytes, long fsyncIntervalMs, MeterRegistry meterRegistry) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        recover();
+        // Never append to a recovered segment; its tail may be torn
+        active = openSegment(nextSequence, segmentBytes);
+
+        this.fsyncLatency = Timer.builder("ingestion.journal.fsync.latency")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.bytesAppended = Counter.builder("ingestion.journal.bytes.appended")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.entriesCompacted = Counter.builder("ingestion.journal.entries.compacted").register(meterRegistry);
+        this.entriesDeadLettered = Counter.builder("ingestion.journal.entries.dead.lettered").register(meterRegistry);
+        Gauge.builder("ingestion.journal.unacknowledged", this, IngestionJournal::getUnacknowledgedCount).register(meterRegistry);
+        Gauge.builder("ingestion.journal.segments", this, IngestionJournal::getSegmentCount).register(meterRegistry);
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(IngestionPipeline.namedThreads("journal-sync"));
+        this.syncer.scheduleWithFixedDelay(this::sync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Ingestion journal opened in {} ({} segments, {} unacknowledged entries, next sequence {})",
+                directory, segments.size(), unacked.size(), nextSequence);
+    }
+
+    /**
+     * Appends a data entry.
+     *
+     * @return the entry's sequence number, used to acknowledge it
+     */
+    public synchronized long append(byte type, byte[] payload) {
+        if (type == TYPE_ACK) {
+            throw new IllegalArgumentException("Type " + TYPE_ACK + " is reserved for acks");
+        }
+        long sequence = write(type, payload);
+        track(sequence, new Location(active, active.position - payload.length, payload.length, type));
+        return sequence;
+    }
+
+    /**
+     * Marks an entry as stored. Unknown or already acknowledged sequence numbers are ignored.
+     */
+    public synchronized void ack(long sequence) {
+        Location location = unacked.remove(sequence);
+        if (location == null) {
+            return;
+        }
+        byte[] payload = ByteBuffer.allocate(8).putLong(sequence).array();
+        write(TYPE_ACK, payload);
+        untrack(location);
+        deleteAcknowledgedSegments();
+    }
+
+    /**
+     * Gives up on an entry: its payload is written to {@code dead-letter/<sequence>-<type>.entry} in the journal
+     * directory, where it can be inspected or replayed by hand, and the entry is acknowledged.
+     *
+     * @return whether the entry was still unacknowledged
+     */
+    public synchronized boolean deadLetter(long sequence) {
+        Entry entry = read(sequence);
+        if (entry == null) {
+            return false;
+        }
+        Path deadLetters = directory.resolve(DEAD_LETTER_DIRECTORY);
+        try {
+            Files.createDirectories(deadLetters);
+            Files.write(deadLetters.resolve(String.format("%020d-%d.entry", sequence, entry.getType())), entry.getPayload());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not dead-letter journal entry " + sequence, e);
+        }
+        ack(sequence);
+        entriesDeadLettered.increment();
+        return true;
+    }
+
+    /**
+     * Reads an unacknowledged entry, or returns {@code null} if it has been acknowledged.
+     */
+    public synchronized Entry read(long sequence) {
+        Location location = unacked.get(sequence);
+        if (location == null) {
+            return null;
+        }
+        byte[] payload = new byte[location.length];
+        if (location.segment.buffer != null) {
+            location.segment.buffer.get(location.position, payload);
+        } else {
+            try (FileChannel channel = FileChannel.open(location.segment.path, StandardOpenOption.READ)) {
+                ByteBuffer target = ByteBuffer.wrap(payload);
+                while (target.hasRemaining() && channel.read(target, location.position + target.position()) >= 0) {
+                    // keep reading until the payload is complete
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new Entry(sequence, location.type, payload);
+    }
+
+    /**
+     * Sequence numbers of all entries that have not been acknowledged, oldest first.
+     */
+    public synchronized List<Long> unacknowledged() {
+        List<Long> sequences = new ArrayList<>(unacked.keySet());
+        sequences.sort(null);
+        return sequences;
+    }
+
+    public synchronized int getUnacknowledgedCount() {
+        return unacked.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public void sync() {
+        MappedByteBuffer buffer;
+        synchronized (this) {
+            if (!dirty || closed) {
+                return;
+            }
+            dirty = false;
+            buffer = active.buffer;
+        }
+        long start = System.nanoTime();
+        // force() outside the lock so appends continue while the page cache is written back
+        buffer.force();
+        fsyncLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        syncer.shutdownNow();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            active.buffer.force();
+            closed = true;
+            closeChannel(active);
+        }
+        logger.info("Ingestion journal closed ({} unacknowledged entries)", unacked.size());
+    }
+
+    private long write(byte type, byte[] payload) {
+        long sequence = nextSequence++;
+        put(type, sequence, payload);
+        return sequence;
+    }
+
+    /**
+     * Writes a record to the active segment, rolling it first if the record does not fit.
+     */
+    private void put(byte type, long sequence, byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Ingestion journal is closed");
+        }
+        int recordBytes = HEADER_BYTES + payload.length;
+        // Keep room for the zero length that terminates the segment
+        if (active.buffer.capacity() - active.position < recordBytes + 4) {
+            roll(recordBytes + 4);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence));
+        crc.update(payload);
+
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.position;
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + 8, type);
+        buffer.putLong(position + 9, sequence);
+        buffer.put(position + HEADER_BYTES, payload);
+        // The length goes last so a reader never sees a complete-looking header in front of a partial payload
+        buffer.putInt(position, payload.length);
+        active.position = position + recordBytes;
+        dirty = true;
+        bytesAppended.increment(recordBytes);
+    }
+
+    private void roll(int minimumBytes) {
+        Segment sealed = active;
+        sealed.buffer.force();
+        closeChannel(sealed);
+        // Compaction can roll without consuming a sequence number; segment names must still increase
+        active = openSegment(Math.max(nextSequence, segments.lastKey() + 1), Math.max(segmentBytes, minimumBytes));
+        logger.debug("Rolled journal segment {} -> {}", sealed.path.getFileName(), active.path.getFileName());
+        if (!compacting) {
+            compact();
+        }
+        deleteAcknowledgedSegments();
+    }
+
+    /**
+     * Moves the live entries of the oldest segments into the active segment and deletes those segments, for as
+     * long as the oldest segment holds only a few live entries. Acks of the moved entries can only follow the
+     * copies, and acks in the remaining segments only refer to entries that are still on disk or already gone,
+     * so recovery gives the same result.
+     */
+    private void compact() {
+        compacting = true;
+        try {
+            // Copying can roll again; segments from here on hold the copies and are never compacted in this pass
+            Segment target = active;
+            List<Segment> compacted = new ArrayList<>();
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                if (segment == target || segment.liveBytes > segmentBytes / COMPACTION_LIVE_DIVISOR) {
+                    break;
+                }
+                if (segment.unacked > 0) {
+                    relocate(segment);
+                }
+                compacted.add(segment);
+            }
+            if (compacted.isEmpty()) {
+                return;
+            }
+            // The copies must be on disk before the originals are deleted
+            active.buffer.force();
+            for (Segment segment : compacted) {
+                delete(segment);
+            }
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private void relocate(Segment segment) {
+        List<Long> live = new ArrayList<>();
+        for (Map.Entry<Long, Location> entry : unacked.entrySet()) {
+            if (entry.getValue().segment == segment) {
+                live.add(entry.getKey());
+            }
+        }
+        live.sort(null);
+        for (Long sequence : live) {
+            Entry entry = read(sequence);
+            untrack(unacked.get(sequence));
+            put(entry.getType(), sequence, entry.getPayload());
+            track(sequence, new Location(active, active.position - entry.getPayload().length, entry.getPayload().length, entry.getType()));
+            entriesCompacted.increment();
+        }
+        logger.debug("Compacted {} live entries out of journal segment {}", live.size(), segment.path.getFileName());
+    }
+
+    private void track(long sequence, Location location) {
+        unacked.put(sequence, location);
+        location.segment.unacked++;
+        location.segment.liveBytes += HEADER_BYTES + location.length;
+    }
+
+    private void untrack(Location location) {
+        location.segment.unacked--;
+        location.segment.liveBytes -= HEADER_BYTES + location.length;
+    }
+
+    /**
+     * Deletes segments from the oldest end while all their entries are acknowledged. Newer segments are kept
+     * even when fully acknowledged because they may hold the acks of older, still live entries.
+     */
+    private void deleteAcknowledgedSegments() {
+        Iterator<Segment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment == active || segment.unacked > 0) {
+                return;
+            }
+            iterator.remove();
+            deleteFile(segment);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.values().remove(segment);
+        deleteFile(segment);
+    }
+
+    private static void deleteFile(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+            logger.debug("Deleted journal segment {}", segment.path.getFileName());
+        } catch (IOException e) {
+            logger.warn("Could not delete journal segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private Segment openSegment(long firstSequence, int size) {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(path);
+            segment.channel = channel;
+            segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            segments.put(firstSequence, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create journal segment " + path, e);
+        }
+    }
+
+    private static void closeChannel(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close journal segment {}: {}", segment.path, e.getMessage());
+        }
+        // The mapping stays valid until it is garbage collected; reads of sealed segments go through the file
+        segment.channel = null;
+        segment.buffer = null;
+    }
+
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        // Zero-padded sequence numbers sort in order by name
+        paths.sort(null);
+
+        Set<Long> acked = new HashSet<>();
+        long maxSequence = -1;
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            long firstSequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(path);
+            segments.put(firstSequence, segment);
+
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            int position = 0;
+            while (data.limit() - position >= HEADER_BYTES) {
+                int length = data.getInt(position);
+                if (length <= 0 || length > data.limit() - position - HEADER_BYTES) {
+                    break;
+                }
+                int storedCrc = data.getInt(position + 4);
+                byte type = data.get(position + 8);
+                long sequence = data.getLong(position + 9);
+                CRC32C crc = new CRC32C();
+                crc.update(data.array(), position + 8, 1 + 8 + length);
+                if ((int) crc.getValue() != storedCrc) {
+                    logger.warn("Journal segment {} has a corrupt record at offset {}; ignoring the rest of the segment", name, position);
+                    break;
+                }
+                if (type == TYPE_ACK) {
+                    acked.add(data.getLong(position + HEADER_BYTES));
+                } else {
+                    // A compacted copy supersedes an original whose segment was not deleted before a crash
+                    Location original = unacked.get(sequence);
+                    if (original != null) {
+                        untrack(original);
+                    }
+                    track(sequence, new Location(segment, position + HEADER_BYTES, length, type));
+                }
+                maxSequence = Math.max(maxSequence, sequence);
+                position += HEADER_BYTES + length;
+            }
+        }
+        for (Long sequence : acked) {
+            Location location = unacked.remove(sequence);
+            if (location != null) {
+                untrack(location);
+            }
+        }
+        // A segment can be empty if the process stopped right after rolling; never reuse its name
+        nextSequence = segments.isEmpty() ? maxSequence + 1 : Math.max(maxSequence, segments.lastKey()) + 1;
+        deleteAcknowledgedSegments();
+    }
+
+    /**
+     * An unacknowledged journal entry.
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final byte type;
+        private final byte[] payload;
+
+        private Entry(long sequence, byte type, byte[] payload) {
+            this.sequence = sequence;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private int unacked;
+        private long liveBytes;
+        private int position;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+    }
+
+    private static final class Location {
+        private final Segment segment;
+        private final int position;
+        private final int length;
+        private final byte type;
+
+        private Location(Segment segment, int position, int length, byte type) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how far behind stored historical data is, from the newest bar written for each symbol.
+ * <p>
+ * {@code ingestion.lag.max} is the lag of the most stale symbol that has been written since startup. With
+ * {@code ingestion.metrics.per-symbol-lag=true} every symbol also gets an {@code ingestion.lag} gauge tagged
+ * with its name; that is one time series per symbol, so it is capped at
+ * {@code ingestion.metrics.max-tracked-symbols} and off by default.
+ */
+@Service
+public class IngestionLagTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionLagTracker.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${ingestion.metrics.per-symbol-lag:false}")
+    private boolean perSymbolLag;
+
+    @Value("${ingestion.metrics.max-tracked-symbols:5000}")
+    private int maxTrackedSymbols;
+
+    // Newest stored bar time per symbol, epoch millis
+    private final Map<String, AtomicLong> latestBars = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("ingestion.lag.max", this, tracker -> tracker.getMaxLagSeconds())
+                .description("Seconds since the newest stored bar of the most stale tracked symbol")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.lag.tracked.symbols", latestBars, Map::size)
+                .description("Symbols with tracked ingestion lag")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onHistoricalDataWritten(HistoricalDataWrittenEvent event) {
+        AtomicLong latest = latestBars.get(event.getSymbol());
+        if (latest == null) {
+            if (latestBars.size() >= maxTrackedSymbols) {
+                logger.debug("Not tracking ingestion lag for {}, {} symbols already tracked", event.getSymbol(), maxTrackedSymbols);
+                return;
+            }
+            latest = latestBars.computeIfAbsent(event.getSymbol(), this::track);
+        }
+        latest.accumulateAndGet(event.getLastEpochMillis(), Math::max);
+    }
+
+    private AtomicLong track(String symbol) {
+        AtomicLong latest = new AtomicLong(Long.MIN_VALUE);
+        if (perSymbolLag) {
+            Gauge.builder("ingestion.lag", latest, IngestionLagTracker::lagSeconds)
+                    .description("Seconds since the newest stored bar of the symbol")
+                    .baseUnit("seconds")
+                    .tag("symbol", symbol)
+                    .register(meterRegistry);
+        }
+        return latest;
+    }
+
+    public double getMaxLagSeconds() {
+        double max = 0;
+        for (AtomicLong latest : latestBars.values()) {
+            max = Math.max(max, lagSeconds(latest));
+        }
+        return max;
+    }
+
+    private static double lagSeconds(AtomicLong latest) {
+        long millis = latest.get();
+        return millis == Long.MIN_VALUE ? 0 : Math.max(0, System.currentTimeMillis() - millis) / 1000.0;
+    }
+}
@@ -0,0 +1,159 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.dto.BulkIngestionResult;
+import com.backtestingbuddy.ingestionengine.dto.SymbolIngestionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Two-stage fetch/persist pipeline for ingesting many symbols.
+ * <p>
+ * The fetch stage is asynchronous: upstream calls are paced by the {@link YahooRequestScheduler}, and a
+ * semaphore only caps how many symbols are being fetched at once. The persist stage runs on its own
+ * fixed-size pool. A second semaphore caps the number of symbols that are in flight (fetched but not yet
+ * persisted) so a slow persist stage applies backpressure to the fetch stage instead of buffering the
+ * whole universe in memory.
+ */
+public class IngestionPipeline implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private final int fetchConcurrency;
+    private final ExecutorService persistExecutor;
+    private final int maxInFlight;
+    // A Yahoo or ClickHouse outage fails every symbol of a run; the run summary has the totals
+    private final LogSampler failureLogSampler = new LogSampler(10, 10_000);
+
+    public IngestionPipeline(int fetchConcurrency, int persistConcurrency, int maxInFlight) {
+        if (fetchConcurrency < 1 || persistConcurrency < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Pipeline concurrency limits must be positive");
+        }
+        this.fetchConcurrency = fetchConcurrency;
+        this.persistExecutor = Executors.newFixedThreadPool(persistConcurrency, namedThreads("ingest-persist"));
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Runs every symbol through the fetch and persist stages and blocks until all of them have finished.
+     */
+    public BulkIngestionResult run(List<String> symbols,
+                                   Function<String, CompletableFuture<FetchedSymbolData>> fetchStage,
+                                   Function<FetchedSymbolData, CompletableFuture<Void>> persistStage) {
+        long start = System.nanoTime();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Semaphore fetching = new Semaphore(fetchConcurrency);
+        List<CompletableFuture<SymbolIngestionResult>> futures = new ArrayList<>(symbols.size());
+
+        for (String symbol : symbols) {
+            try {
+                inFlight.acquire();
+                fetching.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Bulk ingestion interrupted after submitting {} of {} symbols", futures.size(), symbols.size());
+                break;
+            }
+            long symbolStart = System.nanoTime();
+            CompletableFuture<SymbolIngestionResult> future = fetch(symbol, fetchStage)
+                    .whenComplete((data, ex) -> fetching.release())
+                    .thenComposeAsync(data -> persist(data, persistStage, symbolStart), persistExecutor)
+                    .exceptionally(ex -> {
+                        Throwable cause = unwrap(ex);
+                        long suppressed = failureLogSampler.sample();
+                        if (suppressed >= 0) {
+                            logger.error("Bulk ingestion failed for symbol {}: {} ({} similar messages suppressed)", symbol, cause.getMessage(), suppressed);
+                        }
+                        return SymbolIngestionResult.failed(symbol, elapsedMs(symbolStart), cause.getMessage());
+                    })
+                    .whenComplete((result, ex) -> inFlight.release());
+            futures.add(future);
+        }
+
+        List<SymbolIngestionResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<SymbolIngestionResult> future : futures) {
+            results.add(future.join());
+        }
+
+        BulkIngestionResult summary = new BulkIngestionResult(results, elapsedMs(start));
+        logger.info("Bulk ingestion finished: {} symbols ({} succeeded, {} without data, {} failed), {} historical records in {}ms ({} symbols/s, {} records/s)",
+                summary.getTotalSymbols(), summary.getSucceeded(), summary.getNoData(), summary.getFailed(),
+                summary.getHistoricalRecords(), summary.getElapsedMs(),
+                String.format("%.1f", summary.getSymbolsPerSecond()), String.format("%.1f", summary.getRecordsPerSecond()));
+        return summary;
+    }
+
+    private static CompletableFuture<FetchedSymbolData> fetch(String symbol, Function<String, CompletableFuture<FetchedSymbolData>> fetchStage) {
+        try {
+            return fetchStage.apply(symbol);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<SymbolIngestionResult> persist(FetchedSymbolData data,
+                                                             Function<FetchedSymbolData, CompletableFuture<Void>> persistStage,
+                                                             long symbolStart) {
+        if (data.isEmpty() && data.getQuoteError() != null) {
+            return CompletableFuture.completedFuture(SymbolIngestionResult.failed(data.getSymbol(), elapsedMs(symbolStart), data.getQuoteError()));
+        }
+        if (data.isEmpty()) {
+            logger.warn("No data (neither quote nor historical) found for symbol: {}", data.getSymbol());
+            return CompletableFuture.completedFuture(new SymbolIngestionResult(data.getSymbol(),
+                    SymbolIngestionResult.Status.NO_DATA, false, 0, elapsedMs(symbolStart), null));
+        }
+        // The persist stage hands rows to the write buffer; the symbol stays in flight until they are flushed
+        return persistStage.apply(data).thenApply(ignored -> {
+            SymbolIngestionResult result = new SymbolIngestionResult(data.getSymbol(),
+                    SymbolIngestionResult.Status.SUCCESS, data.hasQuote(), data.getHistoricalRecordCount(), elapsedMs(symbolStart), null);
+            result.setQuoteError(data.getQuoteError());
+            return result;
+        });
+    }
+
+    @Override
+    public void close() {
+        persistExecutor.shutdown();
+        try {
+            if (!persistExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                persistExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            persistExecutor.shutdownNow();
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        Throwable cause = ex;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
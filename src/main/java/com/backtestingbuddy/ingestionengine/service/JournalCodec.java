@@ -0,0 +1,193 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * Binary encoding of journal payloads.
+ * <p>
+ * Historical bars are stored column by column as zig-zag varint deltas from the previous bar, so a daily bar
+ * of a liquid stock takes roughly 15-25 bytes instead of 56. Stock quote rows (as built for
+ * {@code INSERT INTO stock_quotes}) start with a bitmask of null columns followed by the non-null values.
+ */
+public final class JournalCodec {
+
+    public static final byte TYPE_STOCK_QUOTE = 1;
+    public static final byte TYPE_HISTORICAL_BARS = 2;
+
+    private static final int STOCK_QUOTE_COLUMNS = 14;
+
+    private JournalCodec() {
+    }
+
+    public static byte[] encodeBarSeries(BarSeries series) {
+        Writer out = new Writer(32 + series.size() * 20);
+        out.writeString(series.getSymbol());
+        out.writeVarLong(series.size());
+        long previousTime = 0;
+        long[] previous = new long[6];
+        for (int i = 0; i < series.size(); i++) {
+            out.writeZigZag(series.getEpochMillis(i) - previousTime);
+            previousTime = series.getEpochMillis(i);
+            long[] values = {series.getOpen(i), series.getHigh(i), series.getLow(i), series.getClose(i), series.getAdjClose(i), series.getVolume(i)};
+            for (int c = 0; c < values.length; c++) {
+                out.writeZigZag(values[c] - previous[c]);
+                previous[c] = values[c];
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static BarSeries decodeBarSeries(byte[] payload) {
+        Reader in = new Reader(payload);
+        String symbol = in.readString();
+        int size = (int) in.readVarLong();
+        BarSeries series = new BarSeries(symbol, size);
+        long time = 0;
+        long[] values = new long[6];
+        for (int i = 0; i < size; i++) {
+            time += in.readZigZag();
+            for (int c = 0; c < values.length; c++) {
+                values[c] += in.readZigZag();
+            }
+            series.add(time, values[0], values[1], values[2], values[3], values[4], values[5]);
+        }
+        return series;
+    }
+
+    /**
+     * Encodes a row built for the stock_quotes insert: symbol, name, currency, stock_exchange, seven prices,
+     * volume, market_cap and last_trade_time.
+     */
+    public static byte[] encodeStockQuoteRow(Object[] row) {
+        Writer out = new Writer(128);
+        int nulls = 0;
+        for (int i = 0; i < STOCK_QUOTE_COLUMNS; i++) {
+            if (row[i] == null) {
+                nulls |= 1 << i;
+            }
+        }
+        out.writeVarLong(nulls);
+        for (int i = 0; i < 4; i++) {
+            if (row[i] != null) {
+                out.writeString((String) row[i]);
+            }
+        }
+        for (int i = 4; i < 11; i++) {
+            if (row[i] != null) {
+                out.writeZigZag(BarSeries.toScaled((BigDecimal) row[i]));
+            }
+        }
+        for (int i = 11; i < 13; i++) {
+            if (row[i] != null) {
+                out.writeZigZag(((Number) row[i]).longValue());
+            }
+        }
+        if (row[13] != null) {
+            out.writeZigZag(((Timestamp) row[13]).getTime());
+        }
+        return out.toByteArray();
+    }
+
+    public static Object[] decodeStockQuoteRow(byte[] payload) {
+        Reader in = new Reader(payload);
+        int nulls = (int) in.readVarLong();
+        Object[] row = new Object[STOCK_QUOTE_COLUMNS];
+        for (int i = 0; i < 4; i++) {
+            if ((nulls & (1 << i)) == 0) {
+                row[i] = in.readString();
+            }
+        }
+        for (int i = 4; i < 11; i++) {
+            if ((nulls & (1 << i)) == 0) {
+                row[i] = BarSeries.toBigDecimal(in.readZigZag());
+            }
+        }
+        for (int i = 11; i < 13; i++) {
+            if ((nulls & (1 << i)) == 0) {
+                row[i] = in.readZigZag();
+            }
+        }
+        if ((nulls & (1 << 13)) == 0) {
+            row[13] = new Timestamp(in.readZigZag());
+        }
+        return row;
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        private Writer(int capacity) {
+            buffer = new byte[Math.max(capacity, 16)];
+        }
+
+        private void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (buffer.length - position < bytes) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        private Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private String readString() {
+            int length = (int) readVarLong();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how often a hot-path log statement is written: at most {@code permits} messages per interval, the rest
+ * are counted and reported with the next message that gets through. Metrics carry the full counts; the log
+ * only needs examples.
+ */
+public class LogSampler {
+
+    private final int permits;
+    private final long intervalNanos;
+    private long windowStart;
+    private int used;
+    private long suppressed;
+
+    public LogSampler(int permits, long intervalMs) {
+        this.permits = permits;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * @return -1 if this message should be dropped, otherwise the number of messages dropped since the last one
+     * that was let through
+     */
+    public synchronized long sample() {
+        long now = System.nanoTime();
+        if (now - windowStart >= intervalNanos) {
+            windowStart = now;
+            used = 0;
+        }
+        if (used >= permits) {
+            suppressed++;
+            return -1;
+        }
+        used++;
+        long dropped = suppressed;
+        suppressed = 0;
+        return dropped;
+    }
+}
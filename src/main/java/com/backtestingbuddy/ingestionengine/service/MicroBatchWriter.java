@@ -0,0 +1,279 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Write-behind buffer that collects items in memory and hands them to a flush function in large batches.
+ * <p>
+ * A batch is flushed as soon as it reaches {@code maxRows} rows or {@code maxBytes} estimated bytes, or
+ * when the oldest buffered item is {@code maxDelayMs} old. Submitting blocks once {@code capacityRows}
+ * rows are buffered or being flushed, and fails after {@code offerTimeoutMs}, so producers slow down to
+ * the rate the sink can absorb. Each submit returns a future that completes when its batch is written.
+ */
+public class MicroBatchWriter<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatchWriter.class);
+
+    private final String name;
+    private final Consumer<List<T>> flusher;
+    private final ToIntFunction<T> rowCounter;
+    private final ToLongFunction<T> byteEstimator;
+    private final int maxRows;
+    private final long maxBytes;
+    private final long maxDelayNanos;
+    private final int capacityRows;
+    private final long offerTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    private List<Entry<T>> pending = new ArrayList<>();
+    private int pendingRows;
+    private long pendingBytes;
+    private long oldestPendingNanos;
+    private int flushingRows;
+    private boolean closed;
+    private boolean terminated;
+
+    private final Thread flushThread;
+
+    private final Timer flushLatency;
+    private final DistributionSummary flushRows;
+    private final DistributionSummary flushBytes;
+    private final Counter flushFailures;
+
+    public MicroBatchWriter(String name,
+                            Consumer<List<T>> flusher,
+                            ToIntFunction<T> rowCounter,
+                            ToLongFunction<T> byteEstimator,
+                            int maxRows,
+                            long maxBytes,
+                            long maxDelayMs,
+                            int capacityRows,
+                            long offerTimeoutMs,
+                            MeterRegistry meterRegistry) {
+        this.name = name;
+        this.flusher = flusher;
+        this.rowCounter = rowCounter;
+        this.byteEstimator = byteEstimator;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.capacityRows = Math.max(capacityRows, maxRows);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+
+        this.flushLatency = Timer.builder("clickhouse.buffer.flush.latency")
+                .tag("buffer", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.flushRows = DistributionSummary.builder("clickhouse.buffer.flush.rows")
+                .tag("buffer", name)
+                .baseUnit("rows")
+                .register(meterRegistry);
+        this.flushBytes = DistributionSummary.builder("clickhouse.buffer.flush.bytes")
+                .tag("buffer", name)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("clickhouse.buffer.flush.failures")
+                .tag("buffer", name)
+                .register(meterRegistry);
+        Gauge.builder("clickhouse.buffer.pending.rows", this, MicroBatchWriter::bufferedRows)
+                .tag("buffer", name)
+                .register(meterRegistry);
+
+        this.flushThread = new Thread(this::flushLoop, "clickhouse-buffer-" + name);
+        this.flushThread.setDaemon(true);
+        this.flushThread.start();
+    }
+
+    /**
+     * Buffers an item, blocking while the buffer is at capacity.
+     *
+     * @return a future completed once the batch containing the item has been flushed
+     */
+    public CompletableFuture<Void> submit(T item) {
+        int rows = rowCounter.applyAsInt(item);
+        long bytes = byteEstimator.applyAsLong(item);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            long remaining = offerTimeoutNanos;
+            // An item larger than the whole capacity is still accepted once the buffer is empty
+            while (!closed && pendingRows + flushingRows > 0 && pendingRows + flushingRows + rows > capacityRows) {
+                if (remaining <= 0) {
+                    future.completeExceptionally(new RejectedExecutionException(
+                            "ClickHouse write buffer '" + name + "' is full (" + capacityRows + " rows)"));
+                    return future;
+                }
+                remaining = spaceAvailable.awaitNanos(remaining);
+            }
+            if (closed) {
+                future.completeExceptionally(new RejectedExecutionException("ClickHouse write buffer '" + name + "' is closed"));
+                return future;
+            }
+            boolean first = pending.isEmpty();
+            if (first) {
+                oldestPendingNanos = System.nanoTime();
+            }
+            pending.add(new Entry<>(item, future));
+            pendingRows += rows;
+            pendingBytes += bytes;
+            // Wake the flush thread to arm the delay timer for a new batch or to flush a full one
+            if (first || pendingRows >= maxRows || pendingBytes >= maxBytes) {
+                flushNeeded.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<Entry<T>> batch;
+            long batchBytes;
+            lock.lock();
+            try {
+                while (!closed && !batchReady()) {
+                    if (pending.isEmpty()) {
+                        flushNeeded.await();
+                    } else {
+                        flushNeeded.awaitNanos(maxDelayNanos - (System.nanoTime() - oldestPendingNanos));
+                    }
+                }
+                if (pending.isEmpty()) {
+                    // Only reachable once closed and fully drained
+                    terminated = true;
+                    drained.signalAll();
+                    return;
+                }
+                batch = pending;
+                batchBytes = pendingBytes;
+                flushingRows = pendingRows;
+                pending = new ArrayList<>();
+                pendingRows = 0;
+                pendingBytes = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            flush(batch, batchBytes);
+
+            lock.lock();
+            try {
+                flushingRows = 0;
+                spaceAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean batchReady() {
+        return !pending.isEmpty()
+                && (pendingRows >= maxRows
+                || pendingBytes >= maxBytes
+                || System.nanoTime() - oldestPendingNanos >= maxDelayNanos);
+    }
+
+    private void flush(List<Entry<T>> batch, long batchBytes) {
+        List<T> items = new ArrayList<>(batch.size());
+        for (Entry<T> entry : batch) {
+            items.add(entry.item);
+        }
+        long start = System.nanoTime();
+        try {
+            flusher.accept(items);
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushRows.record(flushingRows);
+            flushBytes.record(batchBytes);
+            logger.debug("Flushed {} rows (~{} bytes) from buffer '{}' in {}ms", flushingRows, batchBytes, name,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            for (Entry<T> entry : batch) {
+                entry.future.complete(null);
+            }
+        } catch (Exception e) {
+            flushFailures.increment();
+            logger.error("Error flushing {} rows from buffer '{}': {}", flushingRows, name, e.getMessage(), e);
+            for (Entry<T> entry : batch) {
+                entry.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private double bufferedRows() {
+        lock.lock();
+        try {
+            return pendingRows + flushingRows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting new items and waits up to {@code timeoutMs} for everything already buffered to be flushed.
+     */
+    public void close(long timeoutMs) {
+        lock.lock();
+        try {
+            closed = true;
+            flushNeeded.signal();
+            spaceAvailable.signalAll();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (!terminated && remaining > 0) {
+                remaining = drained.awaitNanos(remaining);
+            }
+            if (!terminated) {
+                logger.warn("ClickHouse write buffer '{}' did not drain within {}ms", name, timeoutMs);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            lock.unlock();
+        }
+        logger.info("ClickHouse write buffer '{}' drained and closed", name);
+    }
+
+    @Override
+    public void close() {
+        close(30_000);
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final CompletableFuture<Void> future;
+
+        private Entry(T item, CompletableFuture<Void> future) {
+            this.item = item;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.WatchlistEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import yahoofinance.Stock;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls quotes for every symbol on the watchlist at its own cadence and stores them in {@code stock_quotes}.
+ * <p>
+ * Each symbol is polled every {@code interval} milliseconds at a fixed offset inside that interval derived from
+ * its name, so symbols sharing a tier are spread evenly instead of all coming due together. Due symbols go
+ * through {@link YahooFinanceService#getStockQuoteAsync(String)}, which batches them into multi-symbol calls,
+ * and a quote is only stored when its last trade time has moved since the previous stored quote.
+ */
+@Service
+public class QuotePollingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuotePollingService.class);
+
+    @Autowired
+    private YahooFinanceService yahooFinanceService;
+
+    @Autowired
+    private ClickHouseService clickHouseService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClusterCoordinator clusterCoordinator;
+
+    @Value("${ingestion.polling.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ingestion.polling.tick-ms:250}") // How often due symbols are checked
+    private long tickMs;
+
+    @Value("${ingestion.polling.default-tier:normal}")
+    private String defaultTier;
+
+    @Value("#{${ingestion.polling.tier-intervals:{fast: 15, normal: 60, slow: 300}}}") // Seconds per tier
+    private Map<String, Integer> tierIntervals;
+
+    @Value("${ingestion.cluster.watchlist-refresh-ms:30000}") // Cluster mode: reload watchlist changes made on other nodes
+    private long watchlistRefreshMs;
+
+    private final Map<String, PolledSymbol> watchlist = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer;
+
+    private Counter polls;
+    private Counter saved;
+    private Counter unchanged;
+    private Counter failures;
+    private Counter overruns;
+    private Timer lag;
+    // Every due symbol fails while Yahoo is down; the failures counter has the totals
+    private final LogSampler failureLogSampler = new LogSampler(10, 10_000);
+
+    @PostConstruct
+    public void start() {
+        polls = Counter.builder("quote.polling.polls").register(meterRegistry);
+        saved = Counter.builder("quote.polling.saved").register(meterRegistry);
+        unchanged = Counter.builder("quote.polling.unchanged")
+                .description("Polls skipped because the last trade time had not moved")
+                .register(meterRegistry);
+        failures = Counter.builder("quote.polling.failures").register(meterRegistry);
+        overruns = Counter.builder("quote.polling.overruns")
+                .description("Polls skipped because the previous poll of the symbol was still running")
+                .register(meterRegistry);
+        lag = Timer.builder("quote.polling.lag")
+                .description("Delay between a symbol coming due and its poll being sent")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("quote.polling.watchlist.size", watchlist, Map::size).register(meterRegistry);
+        Gauge.builder("quote.polling.staleness.max.seconds", this, QuotePollingService::getMaxStalenessSeconds).register(meterRegistry);
+
+        try {
+            for (WatchlistEntry entry : clickHouseService.loadWatchlist()) {
+                schedule(entry);
+            }
+        } catch (Exception e) {
+            logger.error("Could not load quote watchlist: {}", e.getMessage(), e);
+        }
+        if (!enabled) {
+            logger.info("Quote polling is disabled (ingestion.polling.enabled=false); {} symbols on the watchlist", watchlist.size());
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(IngestionPipeline.namedThreads("quote-polling"));
+        timer.scheduleAtFixedRate(this::pollDueSymbols, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        if (clusterCoordinator.isEnabled()) {
+            // Every node keeps the whole watchlist and polls the symbols it owns, so ownership can move freely
+            timer.scheduleWithFixedDelay(this::reloadWatchlist, watchlistRefreshMs, watchlistRefreshMs, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Quote polling started for {} symbols (tiers {}, default tier '{}')", watchlist.size(), tierIntervals, defaultTier);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds symbols to the watchlist, or changes their cadence if they are already on it.
+     */
+    public void addToWatchlist(List<WatchlistEntry> entries) {
+        clickHouseService.saveWatchlistEntries(entries);
+        for (WatchlistEntry entry : entries) {
+            schedule(entry);
+        }
+    }
+
+    public boolean removeFromWatchlist(String symbol) {
+        clickHouseService.removeWatchlistEntry(symbol);
+        return watchlist.remove(symbol) != null;
+    }
+
+    public List<WatchlistEntry> getWatchlist() {
+        List<WatchlistEntry> entries = new ArrayList<>();
+        for (PolledSymbol polled : watchlist.values()) {
+            entries.add(polled.entry);
+        }
+        entries.sort(Comparator.comparing(WatchlistEntry::getSymbol));
+        return entries;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Largest time since any watched symbol was last polled successfully, in seconds.
+     */
+    public double getMaxStalenessSeconds() {
+        long now = System.currentTimeMillis();
+        long max = 0;
+        for (PolledSymbol polled : watchlist.values()) {
+            long since = polled.lastSuccessMs > 0 ? polled.lastSuccessMs : polled.addedMs;
+            max = Math.max(max, now - since);
+        }
+        return max / 1000.0;
+    }
+
+    /**
+     * Counters, lag and per-tier sizes, as reported by the actuator endpoint.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("watchlistSize", watchlist.size());
+        Map<String, Integer> tiers = new LinkedHashMap<>();
+        for (PolledSymbol polled : watchlist.values()) {
+            tiers.merge(polled.tier, 1, Integer::sum);
+        }
+        status.put("symbolsPerTier", tiers);
+        status.put("polls", (long) polls.count());
+        status.put("saved", (long) saved.count());
+        status.put("unchanged", (long) unchanged.count());
+        status.put("failures", (long) failures.count());
+        status.put("overruns", (long) overruns.count());
+        status.put("meanLagMs", lag.mean(TimeUnit.MILLISECONDS));
+        status.put("maxLagMs", lag.max(TimeUnit.MILLISECONDS));
+        status.put("maxStalenessSeconds", getMaxStalenessSeconds());
+        return status;
+    }
+
+    /**
+     * Polling state of one symbol, or {@code null} if it is not on the watchlist.
+     */
+    public Map<String, Object> getSymbolStatus(String symbol) {
+        PolledSymbol polled = watchlist.get(symbol);
+        if (polled == null) {
+            return null;
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("symbol", symbol);
+        status.put("tier", polled.tier);
+        status.put("intervalMs", polled.intervalMs);
+        status.put("nextDueMs", polled.nextDueMs);
+        status.put("lastSuccessMs", polled.lastSuccessMs);
+        status.put("lastTradeTimeMs", polled.lastTradeTimeMs);
+        status.put("inFlight", polled.inFlight);
+        return status;
+    }
+
+    private void schedule(WatchlistEntry entry) {
+        String tier = entry.getTier() != null ? entry.getTier() : defaultTier;
+        long intervalMs = TimeUnit.SECONDS.toMillis(entry.getIntervalSeconds() > 0 ? entry.getIntervalSeconds() : tierIntervalSeconds(tier));
+        long now = System.currentTimeMillis();
+        PolledSymbol polled = new PolledSymbol(entry, tier, intervalMs, firstDueMs(entry.getSymbol(), intervalMs, now), now);
+        PolledSymbol previous = watchlist.put(entry.getSymbol(), polled);
+        if (previous != null) {
+            // Keep what we know about the last stored quote so a cadence change does not cause a duplicate save
+            polled.lastTradeTimeMs = previous.lastTradeTimeMs;
+            polled.lastSuccessMs = previous.lastSuccessMs;
+        }
+        logger.debug("Scheduled {} in tier '{}' every {}ms, first poll at {}", entry.getSymbol(), tier, intervalMs, polled.nextDueMs);
+    }
+
+    /**
+     * Applies watchlist changes stored by other nodes: new and changed entries are (re)scheduled, removed ones
+     * dropped. Unchanged entries keep their schedule.
+     */
+    private void reloadWatchlist() {
+        try {
+            Map<String, WatchlistEntry> stored = new LinkedHashMap<>();
+            for (WatchlistEntry entry : clickHouseService.loadWatchlist()) {
+                stored.put(entry.getSymbol(), entry);
+            }
+            int changed = 0;
+            for (WatchlistEntry entry : stored.values()) {
+                PolledSymbol polled = watchlist.get(entry.getSymbol());
+                if (polled == null || !Objects.equals(polled.entry.getTier(), entry.getTier())
+                        || polled.entry.getIntervalSeconds() != entry.getIntervalSeconds()) {
+                    schedule(entry);
+                    changed++;
+                }
+            }
+            int removed = 0;
+            for (String symbol : new ArrayList<>(watchlist.keySet())) {
+                if (!stored.containsKey(symbol)) {
+                    watchlist.remove(symbol);
+                    removed++;
+                }
+            }
+            if (changed > 0 || removed > 0) {
+                logger.info("Reloaded quote watchlist: {} symbols scheduled or changed, {} removed", changed, removed);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not reload quote watchlist: {}", e.getMessage());
+        }
+    }
+
+    private int tierIntervalSeconds(String tier) {
+        Integer seconds = tierIntervals.get(tier);
+        if (seconds == null) {
+            logger.warn("Unknown polling tier '{}', using default tier '{}'", tier, defaultTier);
+            seconds = tierIntervals.getOrDefault(defaultTier, 60);
+        }
+        return seconds;
+    }
+
+    /**
+     * First due time on the symbol's own phase: a stable offset within the interval derived from the symbol,
+     * so the same symbols come due together across restarts and different symbols do not.
+     */
+    static long firstDueMs(String symbol, long intervalMs, long nowMs) {
+        // Spread the string hash over the whole range before taking it modulo the interval
+        long mixed = symbol.hashCode() * 0x9E3779B97F4A7C15L;
+        long phase = Math.floorMod(mixed ^ (mixed >>> 32), intervalMs);
+        long due = nowMs - Math.floorMod(nowMs, intervalMs) + phase;
+        return due < nowMs ? due + intervalMs : due;
+    }
+
+    private void pollDueSymbols() {
+        try {
+            long now = System.currentTimeMillis();
+            for (PolledSymbol polled : watchlist.values()) {
+                if (now < polled.nextDueMs) {
+                    continue;
+                }
+                long dueMs = polled.nextDueMs;
+                // Stay on the symbol's phase; polls missed while we were behind are not made up
+                polled.nextDueMs = dueMs + ((now - dueMs) / polled.intervalMs + 1) * polled.intervalMs;
+                if (!clusterCoordinator.owns(polled.entry.getSymbol())) {
+                    continue;
+                }
+                if (polled.inFlight) {
+                    overruns.increment();
+                    logger.debug("Previous poll of {} still running, skipping this one", polled.entry.getSymbol());
+                    continue;
+                }
+                lag.record(now - dueMs, TimeUnit.MILLISECONDS);
+                poll(polled);
+            }
+        } catch (Exception e) {
+            logger.error("Error in quote polling loop: {}", e.getMessage(), e);
+        }
+    }
+
+    private void poll(PolledSymbol polled) {
+        String symbol = polled.entry.getSymbol();
+        polled.inFlight = true;
+        polls.increment();
+        yahooFinanceService.getStockQuoteAsync(symbol)
+                .thenCompose(stock -> store(polled, stock))
+                .whenComplete((ignored, ex) -> {
+                    polled.inFlight = false;
+                    if (ex != null) {
+                        failures.increment();
+                        long suppressed = failureLogSampler.sample();
+                        if (suppressed >= 0) {
+                            logger.warn("Polling quote for {} failed: {} ({} similar messages suppressed)", symbol,
+                                    YahooRequestScheduler.unwrap(ex).getMessage(), suppressed);
+                        }
+                    } else {
+                        polled.lastSuccessMs = System.currentTimeMillis();
+                    }
+                });
+    }
+
+    private CompletableFuture<Void> store(PolledSymbol polled, Stock stock) {
+        if (stock == null || stock.getQuote() == null) {
+            logger.debug("No quote returned for {}", polled.entry.getSymbol());
+            return CompletableFuture.completedFuture(null);
+        }
+        long lastTradeTimeMs = stock.getQuote().getLastTradeTime() != null
+                ? stock.getQuote().getLastTradeTime().getTimeInMillis()
+                : Long.MIN_VALUE;
+        if (lastTradeTimeMs != Long.MIN_VALUE && lastTradeTimeMs == polled.lastTradeTimeMs) {
+            unchanged.increment();
+            logger.debug("Quote for {} unchanged since {}, skipping save", polled.entry.getSymbol(), lastTradeTimeMs);
+            return CompletableFuture.completedFuture(null);
+        }
+        return clickHouseService.saveStockQuoteAsync(stock).thenRun(() -> {
+            // Only remember the trade time once the quote is stored, so a failed save is retried on the next poll
+            polled.lastTradeTimeMs = lastTradeTimeMs;
+            saved.increment();
+        });
+    }
+
+    private static final class PolledSymbol {
+        private final WatchlistEntry entry;
+        private final String tier;
+        private final long intervalMs;
+        private final long addedMs;
+        private volatile long nextDueMs;
+        private volatile long lastTradeTimeMs = Long.MIN_VALUE;
+        private volatile long lastSuccessMs;
+        private volatile boolean inFlight;
+
+        private PolledSymbol(WatchlistEntry entry, String tier, long intervalMs, long nextDueMs, long addedMs) {
+            this.entry = entry;
+            this.tier = tier;
+            this.intervalMs = intervalMs;
+            this.nextDueMs = nextDueMs;
+            this.addedMs = addedMs;
+        }
+    }
+}
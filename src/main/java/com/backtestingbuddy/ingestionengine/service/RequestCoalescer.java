@@ -0,0 +1,183 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects concurrent single-key lookups and resolves them with one multi-key call.
+ * <p>
+ * The first request for an empty batch opens a window of {@code windowMs}; the batch is sent when the window
+ * closes or as soon as it holds {@code maxBatchSize} distinct keys. Requests for a key that is already in the
+ * open batch share its result. Keys missing from the batch result complete with {@code null}, and a failed
+ * batch fails every request in it.
+ */
+public class RequestCoalescer<K, V> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private final String name;
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> batchFetcher;
+    private final long windowMs;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer;
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private long batchGeneration;
+    private boolean closed;
+
+    private final Counter requests;
+    private final Counter coalesced;
+    private final Counter batches;
+    private final DistributionSummary batchSize;
+    private final DistributionSummary batchFillRatio;
+
+    public RequestCoalescer(String name,
+                            Function<List<K>, CompletableFuture<Map<K, V>>> batchFetcher,
+                            long windowMs,
+                            int maxBatchSize,
+                            MeterRegistry meterRegistry) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Coalescer batch size must be positive");
+        }
+        this.name = name;
+        this.batchFetcher = batchFetcher;
+        this.windowMs = windowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.timer = Executors.newSingleThreadScheduledExecutor(IngestionPipeline.namedThreads("coalescer-" + name));
+
+        this.requests = Counter.builder("coalescer.requests")
+                .tag("coalescer", name)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("coalescer.requests.coalesced")
+                .tag("coalescer", name)
+                .description("Requests answered by a batch another request had already opened")
+                .register(meterRegistry);
+        this.batches = Counter.builder("coalescer.batches")
+                .tag("coalescer", name)
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("coalescer.batch.size")
+                .tag("coalescer", name)
+                .baseUnit("keys")
+                .register(meterRegistry);
+        this.batchFillRatio = DistributionSummary.builder("coalescer.batch.fill.ratio")
+                .tag("coalescer", name)
+                .description("Distinct keys per batch relative to the maximum batch size")
+                .register(meterRegistry);
+        Gauge.builder("coalescer.hit.ratio", this, RequestCoalescer::hitRatio)
+                .tag("coalescer", name)
+                .description("Share of requests that did not need an upstream call of their own")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds {@code key} to the open batch.
+     *
+     * @return a future completed with the key's value from the batch result, or {@code null} if it was absent
+     */
+    public CompletableFuture<V> get(K key) {
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> future;
+        synchronized (this) {
+            requests.increment();
+            if (closed) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Request coalescer '" + name + "' is closed"));
+            }
+            future = pending.get(key);
+            if (future != null) {
+                coalesced.increment();
+                // A copy, so one caller cancelling does not affect the others sharing the key
+                return future.copy();
+            }
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                long generation = batchGeneration;
+                timer.schedule(() -> flushWindow(generation), windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    private void flushWindow(long generation) {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            // The batch this timer was armed for has already been sent because it filled up
+            if (generation != batchGeneration || pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        send(batch);
+    }
+
+    private Map<K, CompletableFuture<V>> takePending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        batchGeneration++;
+        return batch;
+    }
+
+    private void send(Map<K, CompletableFuture<V>> batch) {
+        batches.increment();
+        batchSize.record(batch.size());
+        batchFillRatio.record(batch.size() / (double) maxBatchSize);
+        logger.debug("Sending {} batch with {} keys", name, batch.size());
+
+        CompletableFuture<Map<K, V>> result;
+        try {
+            result = batchFetcher.apply(new ArrayList<>(batch.keySet()));
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((values, error) -> {
+            for (Map.Entry<K, CompletableFuture<V>> entry : batch.entrySet()) {
+                if (error != null) {
+                    entry.getValue().completeExceptionally(error);
+                } else {
+                    entry.getValue().complete(values != null ? values.get(entry.getKey()) : null);
+                }
+            }
+        });
+    }
+
+    private double hitRatio() {
+        double total = requests.count();
+        return total == 0 ? 0.0 : 1.0 - batches.count() / total;
+    }
+
+    /**
+     * Sends whatever is pending and stops accepting requests.
+     */
+    @Override
+    public void close() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            closed = true;
+            batch = pending.isEmpty() ? null : takePending();
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,157 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal encoder for ClickHouse's RowBinary format.
+ * <p>
+ * Values are written little-endian into a reusable byte array that is handed to the underlying stream in
+ * large chunks, so encoding a row does not allocate. Only the column types used by this service are supported.
+ */
+public class RowBinaryEncoder {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+    private long bytesWritten;
+
+    public RowBinaryEncoder(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public RowBinaryEncoder(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Writes a String column: LEB128 length followed by the UTF-8 bytes.
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            value = "";
+        }
+        if (isAscii(value)) {
+            int length = value.length();
+            writeVarInt(length);
+            ensureCapacity(Math.min(length, buffer.length));
+            for (int i = 0; i < length; i++) {
+                if (position == buffer.length) {
+                    flushBuffer();
+                }
+                buffer[position++] = (byte) value.charAt(i);
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+    }
+
+    /**
+     * Writes a DateTime column as UInt32 seconds since the epoch.
+     */
+    public void writeDateTime(long epochSeconds) throws IOException {
+        ensureCapacity(4);
+        int value = (int) epochSeconds;
+        buffer[position++] = (byte) value;
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Writes an Int64 column.
+     */
+    public void writeInt64(long value) throws IOException {
+        ensureCapacity(8);
+        putLong(value);
+    }
+
+    /**
+     * Writes a Decimal128 column (Decimal(P, S) with 18 &lt; P &lt;= 38) from its unscaled value.
+     */
+    public void writeDecimal128(long unscaledValue) throws IOException {
+        ensureCapacity(16);
+        putLong(unscaledValue);
+        putLong(unscaledValue < 0 ? -1L : 0L);
+    }
+
+    /**
+     * Writes a Float64 column (IEEE 754, NaN included).
+     */
+    public void writeFloat64(double value) throws IOException {
+        ensureCapacity(8);
+        putLong(Double.doubleToRawLongBits(value));
+    }
+
+    public void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            int count = Math.min(bytes.length - offset, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, count);
+            position += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * Hands any buffered bytes to the underlying stream.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Total number of encoded bytes, including those still buffered.
+     */
+    public long getBytesWritten() {
+        return bytesWritten + position;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            bytesWritten += position;
+            position = 0;
+        }
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
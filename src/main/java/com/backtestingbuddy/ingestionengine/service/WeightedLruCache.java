@@ -0,0 +1,102 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least-recently-used cache bounded by the total weight (e.g. heap bytes) of its values rather than their count.
+ * A value heavier than the whole cache is not stored. All operations take a single lock, which is fine for the
+ * chunk-sized values this is used for.
+ */
+public class WeightedLruCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long weight;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public WeightedLruCache(String name, long maxWeight, ToLongFunction<V> weigher, MeterRegistry meterRegistry) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.hits = Counter.builder("cache.hits").tag("cache", name).register(meterRegistry);
+        this.misses = Counter.builder("cache.misses").tag("cache", name).register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", name).register(meterRegistry);
+        Gauge.builder("cache.weight", this, WeightedLruCache::getWeight).tag("cache", name).register(meterRegistry);
+        Gauge.builder("cache.size", this, WeightedLruCache::size).tag("cache", name).register(meterRegistry);
+    }
+
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Whether the key is cached, without counting a hit or miss or touching its recency.
+     */
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        V previous = entries.remove(key);
+        if (previous != null) {
+            weight -= weigher.applyAsLong(previous);
+        }
+        if (valueWeight > maxWeight) {
+            return;
+        }
+        entries.put(key, value);
+        weight += valueWeight;
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            weight -= weigher.applyAsLong(eldest.getValue());
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes the entry for {@code key}, if cached.
+     *
+     * @return whether an entry was removed
+     */
+    public synchronized boolean remove(K key) {
+        V value = entries.remove(key);
+        if (value == null) {
+            return false;
+        }
+        weight -= weigher.applyAsLong(value);
+        return true;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,180 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.exception.YahooFinanceException;
+import com.backtestingbuddy.ingestionengine.exception.YahooRateLimitException;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.entity.AbstractBinResponseConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahoofinance.histquotes.Interval;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Historical bars from Yahoo's v8 chart API over a pooled, keep-alive httpclient5 async client.
+ * <p>
+ * Requests hold no thread while in flight: they are scheduled with
+ * {@link YahooRequestScheduler#submitAsync}, sent by the client's I/O reactor, and the body is parsed chunk by
+ * chunk into primitive columns by {@link YahooChartParser} as it arrives. No {@code Stock} is loaded.
+ */
+public class YahooChartHttpProvider implements HistoricalDataProvider, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(YahooChartHttpProvider.class);
+
+    private static final String USER_AGENT = "Mozilla/5.0 (compatible; ingestionengine)";
+
+    private final YahooRequestScheduler requestScheduler;
+    private final String baseUrl;
+    private final CloseableHttpAsyncClient client;
+
+    public YahooChartHttpProvider(YahooRequestScheduler requestScheduler, String baseUrl, int maxConnections,
+                                  long connectTimeoutMs, long responseTimeoutMs) {
+        this.requestScheduler = requestScheduler;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = HttpAsyncClients.custom()
+                .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnections)
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .build())
+                .build();
+        this.client.start();
+    }
+
+    @Override
+    public String getName() {
+        return "http";
+    }
+
+    @Override
+    public CompletableFuture<BarSeries> fetchHistoricalBars(String symbol, Instant from, Instant to, Interval interval) {
+        String uri = chartUri(symbol, from, to, interval);
+        return requestScheduler.submitAsync("historical data for " + symbol, () -> execute(symbol, uri));
+    }
+
+    private CompletableFuture<BarSeries> execute(String symbol, String uri) {
+        logger.debug("Requesting {}", uri);
+        CompletableFuture<BarSeries> result = new CompletableFuture<>();
+        ChartResponseConsumer consumer = new ChartResponseConsumer(symbol);
+        client.execute(AsyncRequestBuilder.get(uri)
+                        .addHeader("User-Agent", USER_AGENT)
+                        .addHeader("Accept", "application/json")
+                        .build(),
+                consumer,
+                new FutureCallback<>() {
+                    @Override
+                    public void completed(BarSeries bars) {
+                        if (consumer.status == 200) {
+                            logger.debug("Received {} historical data points for {}", bars.size(), symbol);
+                            result.complete(bars);
+                        } else {
+                            String reason = consumer.parser != null && consumer.parser.getErrorMessage() != null
+                                    ? consumer.parser.getErrorMessage() : "no error description";
+                            result.completeExceptionally(new YahooFinanceException(
+                                    "Chart request for " + symbol + " failed with HTTP " + consumer.status + ": " + reason));
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        result.completeExceptionally(e);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        result.cancel(false);
+                    }
+                });
+        return result;
+    }
+
+    String chartUri(String symbol, Instant from, Instant to, Interval interval) {
+        return baseUrl + "/v8/finance/chart/" + URLEncoder.encode(symbol, StandardCharsets.UTF_8)
+                + "?period1=" + from.getEpochSecond()
+                + "&period2=" + to.getEpochSecond()
+                + "&interval=" + chartInterval(interval)
+                + "&includeAdjustedClose=true";
+    }
+
+    private static String chartInterval(Interval interval) {
+        return switch (interval) {
+            case WEEKLY -> "1wk";
+            case MONTHLY -> "1mo";
+            default -> "1d";
+        };
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+    }
+
+    /**
+     * Feeds the body to a {@link YahooChartParser} as it streams in. A 429 fails the exchange right away so the
+     * scheduler can back off; other error bodies are still parsed for Yahoo's error description.
+     */
+    private static final class ChartResponseConsumer extends AbstractBinResponseConsumer<BarSeries> {
+
+        private final String symbol;
+        private final byte[] chunk = new byte[8192];
+        private YahooChartParser parser;
+        private volatile int status;
+
+        private ChartResponseConsumer(String symbol) {
+            this.symbol = symbol;
+        }
+
+        @Override
+        protected void start(HttpResponse response, ContentType contentType) throws IOException {
+            status = response.getCode();
+            if (status == 429) {
+                throw new YahooRateLimitException("Chart request for " + symbol + " rejected, HTTP response code: 429");
+            }
+            parser = new YahooChartParser(symbol);
+        }
+
+        @Override
+        protected int capacityIncrement() {
+            return chunk.length;
+        }
+
+        @Override
+        protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+            while (src.hasRemaining()) {
+                int length = Math.min(src.remaining(), chunk.length);
+                src.get(chunk, 0, length);
+                parser.feed(chunk, 0, length);
+            }
+            if (endOfStream) {
+                parser.endOfInput();
+            }
+        }
+
+        @Override
+        protected BarSeries buildResult() {
+            return parser.toBarSeries();
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Incremental parser for Yahoo's v8 chart response, fed with body chunks as they arrive.
+ * <p>
+ * Uses Jackson's non-blocking parser, so no chunk is buffered beyond the token being read. The response is
+ * columnar ({@code timestamp}, {@code indicators.quote[0].open/high/low/close/volume},
+ * {@code indicators.adjclose[0].adjclose}); numbers are appended straight into primitive columns and only
+ * combined into a {@link BarSeries} at the end. Bars without a close (holidays, halts) are skipped, and bar
+ * times are normalized to UTC midnight of the exchange-local date, matching the library's daily bars.
+ */
+final class YahooChartParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long NULL_VALUE = Long.MIN_VALUE;
+
+    private static final int TIMESTAMP = 0;
+    private static final int OPEN = 1;
+    private static final int HIGH = 2;
+    private static final int LOW = 3;
+    private static final int CLOSE = 4;
+    private static final int ADJ_CLOSE = 5;
+    private static final int VOLUME = 6;
+
+    private final String symbol;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final long[][] columns = new long[7][];
+    private final int[] sizes = new int[7];
+    private long gmtOffsetSeconds;
+    private String errorMessage;
+
+    YahooChartParser(String symbol) throws IOException {
+        this.symbol = symbol;
+        this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new long[256];
+        }
+    }
+
+    /**
+     * Parses everything available in {@code data[offset, offset + length)}; the array may be reused afterwards.
+     */
+    void feed(byte[] data, int offset, int length) throws IOException {
+        feeder.feedInput(data, offset, offset + length);
+        drain();
+    }
+
+    void endOfInput() throws IOException {
+        feeder.endOfInput();
+        drain();
+        parser.close();
+    }
+
+    /**
+     * The {@code chart.error.description} of the response, if there was one.
+     */
+    String getErrorMessage() {
+        return errorMessage;
+    }
+
+    BarSeries toBarSeries() {
+        int bars = sizes[TIMESTAMP];
+        BarSeries series = new BarSeries(symbol, bars);
+        for (int i = 0; i < bars; i++) {
+            long close = value(CLOSE, i);
+            if (close == NULL_VALUE) {
+                continue;
+            }
+            long adjClose = value(ADJ_CLOSE, i);
+            long localDay = Math.floorDiv(columns[TIMESTAMP][i] + gmtOffsetSeconds, 86_400L);
+            series.add(localDay * MILLIS_PER_DAY,
+                    orZero(value(OPEN, i)),
+                    orZero(value(HIGH, i)),
+                    orZero(value(LOW, i)),
+                    close,
+                    adjClose == NULL_VALUE ? close : adjClose,
+                    orZero(value(VOLUME, i)));
+        }
+        return series;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT, VALUE_NULL -> number(token);
+                case VALUE_STRING -> string();
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void number(JsonToken token) throws IOException {
+        JsonStreamContext context = parser.getParsingContext();
+        if (context.inArray()) {
+            int column = column(context.getParent().getCurrentName());
+            if (column >= 0) {
+                append(column, token == JsonToken.VALUE_NULL ? NULL_VALUE : read(column, token));
+            }
+        } else if (token == JsonToken.VALUE_NUMBER_INT && "gmtoffset".equals(context.getCurrentName())) {
+            gmtOffsetSeconds = parser.getLongValue();
+        }
+    }
+
+    private void string() throws IOException {
+        JsonStreamContext context = parser.getParsingContext();
+        if ("description".equals(context.getCurrentName()) && context.getParent() != null
+                && "error".equals(context.getParent().getCurrentName())) {
+            errorMessage = parser.getText();
+        }
+    }
+
+    private long read(int column, JsonToken token) throws IOException {
+        if (column == TIMESTAMP || column == VOLUME) {
+            return token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : (long) parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue() * BarSeries.PRICE_MULTIPLIER;
+        }
+        // Exact decimal text of the price, no binary floating point round trip
+        return BarSeries.toScaled(parser.getDecimalValue());
+    }
+
+    private void append(int column, long value) {
+        if (sizes[column] == columns[column].length) {
+            columns[column] = Arrays.copyOf(columns[column], columns[column].length * 2);
+        }
+        columns[column][sizes[column]++] = value;
+    }
+
+    private long value(int column, int index) {
+        return index < sizes[column] ? columns[column][index] : NULL_VALUE;
+    }
+
+    private static long orZero(long value) {
+        return value == NULL_VALUE ? 0L : value;
+    }
+
+    private static int column(String name) {
+        if (name == null) {
+            return -1;
+        }
+        return switch (name) {
+            case "timestamp" -> TIMESTAMP;
+            case "open" -> OPEN;
+            case "high" -> HIGH;
+            case "low" -> LOW;
+            case "close" -> CLOSE;
+            case "adjclose" -> ADJ_CLOSE;
+            case "volume" -> VOLUME;
+            default -> -1;
+        };
+    }
+}
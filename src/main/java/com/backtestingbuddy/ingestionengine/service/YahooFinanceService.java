@@ -1,116 +1,302 @@
 package com.backtestingbuddy.ingestionengine.service;
 
 import com.backtestingbuddy.ingestionengine.exception.YahooFinanceException;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import yahoofinance.Stock;
 import yahoofinance.YahooFinance;
-import yahoofinance.histquotes.HistoricalQuote;
 import yahoofinance.histquotes.Interval;
 
 import java.io.IOException;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class YahooFinanceService {
 
     private static final Logger logger = LoggerFactory.getLogger(YahooFinanceService.class);
 
-    @Value("${yahoo.finance.retry.max-attempts:3}") // Default to 3 retries
-    private int maxRetries;
+    // Rate limiting, adaptive concurrency and 429 retries for all calls below
+    @Autowired
+    private YahooRequestScheduler requestScheduler;
 
-    @Value("${yahoo.finance.retry.delay-ms:2000}") // Default to 2000ms (2 seconds)
-    private long retryDelayMs;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${yahoo.finance.quote-batch.enabled:true}")
+    private boolean quoteBatchEnabled;
+
+    @Value("${yahoo.finance.quote-batch.window-ms:50}") // Default to a 50ms collection window
+    private long quoteBatchWindowMs;
+
+    @Value("${yahoo.finance.quote-batch.max-size:50}")
+    private int quoteBatchMaxSize;
+
+    // Coalesces concurrent single-symbol quote requests into multi-symbol calls
+    private RequestCoalescer<String, Stock> quoteCoalescer;
+
+    @Value("${yahoo.finance.history.lookback-years:5}") // Default to 5 years of history
+    private int historyLookbackYears;
+
+    @Value("${yahoo.finance.history.interval:DAILY}") // DAILY, WEEKLY or MONTHLY
+    private Interval historyInterval;
+
+    @Value("${yahoo.finance.history.provider:http}") // http (async chart API client) or library
+    private String historyProviderName;
+
+    @Value("${clickhouse.schema.mode:legacy}") // Only the dedup schema replaces a bar that is fetched again
+    private String schemaMode;
+
+    @Value("${yahoo.finance.history.fallback-to-library:true}") // Retry failed http fetches through the library
+    private boolean historyFallbackToLibrary;
+
+    @Value("${yahoo.finance.http.base-url:https://query1.finance.yahoo.com}")
+    private String httpBaseUrl;
+
+    @Value("${yahoo.finance.http.max-connections:32}")
+    private int httpMaxConnections;
+
+    @Value("${yahoo.finance.http.connect-timeout-ms:5000}")
+    private long httpConnectTimeoutMs;
+
+    @Value("${yahoo.finance.http.response-timeout-ms:30000}")
+    private long httpResponseTimeoutMs;
+
+    private HistoricalDataProvider libraryProvider;
+    private YahooChartHttpProvider httpProvider;
+    private DistributionSummary historyBars;
+
+    @PostConstruct
+    public void initializeHistoryProviders() {
+        historyBars = DistributionSummary.builder("yahoo.history.bars").description("Bars returned per historical fetch").register(meterRegistry);
+        libraryProvider = new YahooLibraryHistoricalDataProvider(requestScheduler);
+        if ("http".equalsIgnoreCase(historyProviderName)) {
+            httpProvider = new YahooChartHttpProvider(requestScheduler, httpBaseUrl, httpMaxConnections, httpConnectTimeoutMs, httpResponseTimeoutMs);
+        }
+        logger.info("Historical data provider: {}{}", httpProvider != null ? "http" : "library",
+                httpProvider != null && historyFallbackToLibrary ? " (library fallback)" : "");
+    }
+
+    @PreDestroy
+    public void closeHistoryProviders() {
+        if (httpProvider != null) {
+            httpProvider.close();
+        }
+    }
+
+    @PostConstruct
+    public void initializeQuoteBatching() {
+        if (quoteBatchEnabled) {
+            quoteCoalescer = new RequestCoalescer<>("yahoo-quotes", this::fetchQuoteBatch, quoteBatchWindowMs, quoteBatchMaxSize, meterRegistry);
+            logger.info("Quote batching enabled (window {}ms, max {} symbols per call)", quoteBatchWindowMs, quoteBatchMaxSize);
+        }
+    }
+
+    @PreDestroy
+    public void closeQuoteBatching() {
+        if (quoteCoalescer != null) {
+            quoteCoalescer.close();
+        }
+    }
 
     public Stock getStockQuote(String securityName) throws YahooFinanceException {
+        return await(getStockQuoteAsync(securityName));
+    }
+
+    /**
+     * Fetches a quote, batched with other quote requests made within the configured window when batching is enabled.
+     */
+    public CompletableFuture<Stock> getStockQuoteAsync(String securityName) {
+        if (quoteCoalescer != null) {
+            logger.debug("Queueing stock quote request for security: {}", securityName);
+            return quoteCoalescer.get(securityName);
+        }
+        return fetchStockQuote(securityName);
+    }
+
+    private CompletableFuture<Stock> fetchStockQuote(String securityName) {
         logger.debug("Fetching stock quote for security: {}", securityName);
-        for (int i = 0; i < maxRetries; i++) {
-            try {
-                Stock stock = YahooFinance.get(securityName);
-                logger.debug("Received stock quote response for {}: {}", securityName, stock);
-                return stock;
-            } catch (IOException e) {
-                if (e.getMessage() != null && e.getMessage().contains("Server returned HTTP response code: 429")) {
-                    logger.warn("Rate limit exceeded for {} (attempt {}/{}), retrying after {}ms", securityName, i + 1, maxRetries, retryDelayMs);
-                    try {
-                        Thread.sleep(retryDelayMs);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new YahooFinanceException("Retry delay interrupted", ie);
-                    }
-                } else {
-                    logger.error("IO Error fetching stock quote for {} after {} attempts", securityName, i + 1, e);
-                    throw new YahooFinanceException("Error fetching stock quote for " + securityName, e);
-                }
-            }
+        return wrapErrors(timed("quote", "library", requestScheduler.submit("stock quote for " + securityName, () -> {
+            Stock stock = YahooFinance.get(securityName);
+            logger.debug("Received stock quote response for {}: {}", securityName, stock);
+            return stock;
+        })), "Error fetching stock quote for " + securityName);
+    }
+
+    /**
+     * Fetches historical bars from {@code latestStoredDate} on when one is known, falling back to the configured
+     * lookback otherwise, through the configured {@link HistoricalDataProvider}. Returns an empty series when the
+     * stored history is already up to date.
+     */
+    public BarSeries getHistoricalBarsSince(String securityName, Instant latestStoredDate) throws YahooFinanceException {
+        return await(getHistoricalBarsSinceAsync(securityName, latestStoredDate));
+    }
+
+    public CompletableFuture<BarSeries> getHistoricalBarsSinceAsync(String securityName, Instant latestStoredDate) {
+        Instant to = Instant.now();
+        Instant from = historyStart(latestStoredDate, to, historyLookbackYears, historyInterval, "dedup".equalsIgnoreCase(schemaMode));
+        if (from == null) {
+            logger.debug("Historical data for {} is up to date (latest stored bar {})", securityName, latestStoredDate);
+            return CompletableFuture.completedFuture(new BarSeries(securityName));
         }
-        // If all retries fail
-        throw new YahooFinanceException("Failed to fetch stock quote for " + securityName + " after " + maxRetries + " retries due to rate limit.");
-    }
-
-    public List<HistoricalQuote> getHistoricalData(String securityName) throws YahooFinanceException {
-        logger.debug("Fetching historical data for security: {}", securityName);
-         for (int i = 0; i < maxRetries; i++) {
-            try {
-                Stock stock = YahooFinance.get(securityName);
-                 if (stock == null) {
-                    logger.warn("Stock not found for historical data fetch: {}", securityName);
-                    throw new YahooFinanceException("Stock not found: " + securityName);
-                }
-                Calendar from = Calendar.getInstance();
-                Calendar to = Calendar.getInstance();
-                from.add(Calendar.YEAR, -5); // 5 years ago
-
-                logger.debug("Fetching historical data from {} to {} for {}", from.getTime(), to.getTime(), securityName);
-                List<HistoricalQuote> historicalQuotes = stock.getHistory(from, to, Interval.DAILY);
-                logger.debug("Received {} historical data points for {}", historicalQuotes != null ? historicalQuotes.size() : 0, securityName);
-                return historicalQuotes;
-            } catch (IOException e) {
-                 if (e.getMessage() != null && e.getMessage().contains("Server returned HTTP response code: 429")) {
-                     logger.warn("Rate limit exceeded for historical data of {} (attempt {}/{}), retrying after {}ms", securityName, i + 1, maxRetries, retryDelayMs);
-                    try {
-                        Thread.sleep(retryDelayMs);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                         throw new YahooFinanceException("Retry delay interrupted during historical data fetch", ie);
-                    }
-                } else {
-                    logger.error("IO Error fetching historical data for {} after {} attempts", securityName, i + 1, e);
-                    throw new YahooFinanceException("Error fetching historical data for " + securityName, e);
-                }
-            }
+        if (latestStoredDate != null) {
+            logger.debug("Incremental historical fetch for {} starting at {}", securityName, from);
+        }
+        return wrapErrors(fetchHistoricalBars(securityName, from, to), "Error fetching historical data for " + securityName);
+    }
+
+    /**
+     * Start of the range to fetch up to {@code now}: the configured lookback without stored data. Otherwise, with
+     * the dedup schema, the latest stored bar itself, so a bar stored while its period was still open is fetched
+     * again in its final form and replaces the stored one; the legacy MergeTree tables would keep both, so there
+     * the fetch starts one interval after the latest stored bar.
+     *
+     * @return the start, or {@code null} if nothing newer than the stored data can exist yet
+     */
+    static Instant historyStart(Instant latestStoredDate, Instant now, int lookbackYears, Interval interval, boolean refetchLatest) {
+        if (latestStoredDate == null) {
+            return now.atZone(ZoneOffset.UTC).minusYears(lookbackYears).toInstant();
         }
-         // If all retries fail
-        throw new YahooFinanceException("Failed to fetch historical data for " + securityName + " after " + maxRetries + " retries due to rate limit.");
+        Instant from = refetchLatest ? latestStoredDate : next(latestStoredDate, interval);
+        return from.isBefore(now) ? from : null;
+    }
+
+    private static Instant next(Instant bar, Interval interval) {
+        ZonedDateTime time = bar.atZone(ZoneOffset.UTC);
+        return switch (interval) {
+            case WEEKLY -> time.plusWeeks(1).toInstant();
+            case MONTHLY -> time.plusMonths(1).toInstant();
+            default -> time.plusDays(1).toInstant();
+        };
+    }
+
+    /**
+     * Fetches through the http provider when enabled. Only transport and parse failures (I/O errors) fall back to
+     * the library: an HTTP error status is Yahoo's answer for the symbol (e.g. 404 for an unknown one), and a 429
+     * after exhausted retries would only hit the same limit again.
+     */
+    private CompletableFuture<BarSeries> fetchHistoricalBars(String securityName, Instant from, Instant to) {
+        if (httpProvider == null) {
+            return fetchHistoricalBars(libraryProvider, securityName, from, to);
+        }
+        CompletableFuture<BarSeries> bars = fetchHistoricalBars(httpProvider, securityName, from, to);
+        if (!historyFallbackToLibrary) {
+            return bars;
+        }
+        return bars.exceptionallyCompose(error -> {
+            if (!(YahooRequestScheduler.unwrap(error) instanceof IOException)) {
+                return CompletableFuture.failedFuture(error);
+            }
+            logger.warn("Chart API fetch for {} failed ({}), falling back to the library", securityName, YahooRequestScheduler.unwrap(error).getMessage());
+            return fetchHistoricalBars(libraryProvider, securityName, from, to);
+        });
+    }
+
+    private CompletableFuture<BarSeries> fetchHistoricalBars(HistoricalDataProvider provider, String securityName, Instant from, Instant to) {
+        CompletableFuture<BarSeries> bars = timed("history", provider.getName(), provider.fetchHistoricalBars(securityName, from, to, historyInterval));
+        return bars.whenComplete((series, error) -> {
+            if (series != null) {
+                historyBars.record(series.size());
+            }
+        });
     }
-    
+
+    /**
+     * Records the whole call, queueing and rate-limit retries included, under yahoo.calls.
+     */
+    private <T> CompletableFuture<T> timed(String operation, String provider, CompletableFuture<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return call.whenComplete((value, error) -> {
+            String outcome = error == null ? "success" : YahooRequestScheduler.isRateLimited(error) ? "rate_limited" : "error";
+            sample.stop(Timer.builder("yahoo.calls")
+                    .tag("operation", operation)
+                    .tag("provider", provider)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        });
+    }
+
     public Map<String, Stock> getMultipleStockQuotes(String[] securityNames) throws YahooFinanceException {
+        return await(getMultipleStockQuotesAsync(securityNames));
+    }
+
+    public CompletableFuture<Map<String, Stock>> getMultipleStockQuotesAsync(String[] securityNames) {
         logger.debug("Fetching multiple stock quotes for securities: {}", (Object[]) securityNames);
-         for (int i = 0; i < maxRetries; i++) {
-            try {
-                Map<String, Stock> stocks = YahooFinance.get(securityNames);
-                logger.debug("Received multiple stock quotes response: {}", stocks);
-                return stocks;
-            } catch (IOException e) {
-                 if (e.getMessage() != null && e.getMessage().contains("Server returned HTTP response code: 429")) {
-                     logger.warn("Rate limit exceeded for multiple stock quotes (attempt {}/{}), retrying after {}ms", i + 1, maxRetries, retryDelayMs);
-                     try {
-                        Thread.sleep(retryDelayMs);
-                    } catch (InterruptedException ie) {
-                         Thread.currentThread().interrupt();
-                         throw new YahooFinanceException("Retry delay interrupted during multiple quotes fetch", ie);
-                    }
-                } else {
-                    logger.error("IO Error fetching multiple stock quotes after {} attempts", i + 1, e);
-                    throw new YahooFinanceException("Error fetching multiple stock quotes", e);
+        return wrapErrors(timed("quotes", "library", requestScheduler.submit(securityNames.length + " stock quotes", () -> {
+            Map<String, Stock> stocks = YahooFinance.get(securityNames);
+            logger.debug("Received multiple stock quotes response: {}", stocks);
+            return stocks;
+        })), "Error fetching multiple stock quotes");
+    }
+
+    /**
+     * Resolves a coalesced batch with one multi-symbol call; a single symbol goes through the plain quote call.
+     */
+    private CompletableFuture<Map<String, Stock>> fetchQuoteBatch(List<String> securityNames) {
+        if (securityNames.size() == 1) {
+            String securityName = securityNames.get(0);
+            return fetchStockQuote(securityName).thenApply(stock -> {
+                Map<String, Stock> result = new HashMap<>();
+                result.put(securityName, stock);
+                return result;
+            });
+        }
+        return getMultipleStockQuotesAsync(securityNames.toArray(new String[0])).thenApply(stocks -> {
+            // Yahoo keys the response by its own spelling of the symbol; map it back to what was requested
+            Map<String, Stock> result = new HashMap<>();
+            for (String securityName : securityNames) {
+                Stock stock = stocks != null ? stocks.get(securityName) : null;
+                if (stock == null && stocks != null) {
+                    stock = stocks.get(securityName.toUpperCase());
                 }
+                result.put(securityName, stock);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Maps failures to {@link YahooFinanceException}, keeping ones that already are (e.g. exhausted rate-limit retries).
+     * Callers report the failure (sampled on the bulk and polling paths), so it is only logged here at debug level.
+     */
+    private static <T> CompletableFuture<T> wrapErrors(CompletableFuture<T> future, String message) {
+        return future.handle((value, error) -> {
+            if (error == null) {
+                return value;
+            }
+            Throwable cause = YahooRequestScheduler.unwrap(error);
+            if (cause instanceof YahooFinanceException) {
+                throw (YahooFinanceException) cause;
+            }
+            logger.debug("{}: {}", message, cause.getMessage(), cause);
+            throw new YahooFinanceException(message, cause);
+        });
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws YahooFinanceException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = YahooRequestScheduler.unwrap(e);
+            if (cause instanceof YahooFinanceException) {
+                throw (YahooFinanceException) cause;
             }
+            throw new YahooFinanceException(cause.getMessage(), cause);
         }
-         // If all retries fail
-        throw new YahooFinanceException("Failed to fetch multiple stock quotes after " + maxRetries + " retries due to rate limit.");
     }
 }
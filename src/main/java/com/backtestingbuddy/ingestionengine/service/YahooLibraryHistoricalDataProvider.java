@@ -0,0 +1,55 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.exception.YahooFinanceException;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import yahoofinance.Stock;
+import yahoofinance.YahooFinance;
+import yahoofinance.histquotes.HistoricalQuote;
+import yahoofinance.histquotes.Interval;
+
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Historical bars through the YahooFinanceAPI library. Each call blocks a scheduler worker for the whole
+ * request and loads a full {@link Stock} first; kept as the fallback for {@link YahooChartHttpProvider}.
+ */
+public class YahooLibraryHistoricalDataProvider implements HistoricalDataProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(YahooLibraryHistoricalDataProvider.class);
+
+    private final YahooRequestScheduler requestScheduler;
+
+    public YahooLibraryHistoricalDataProvider(YahooRequestScheduler requestScheduler) {
+        this.requestScheduler = requestScheduler;
+    }
+
+    @Override
+    public String getName() {
+        return "library";
+    }
+
+    @Override
+    public CompletableFuture<BarSeries> fetchHistoricalBars(String symbol, Instant from, Instant to, Interval interval) {
+        return requestScheduler.submit("historical data for " + symbol, () -> {
+            Stock stock = YahooFinance.get(symbol);
+            if (stock == null) {
+                logger.warn("Stock not found for historical data fetch: {}", symbol);
+                throw new YahooFinanceException("Stock not found: " + symbol);
+            }
+            Calendar fromCalendar = Calendar.getInstance();
+            fromCalendar.setTimeInMillis(from.toEpochMilli());
+            Calendar toCalendar = Calendar.getInstance();
+            toCalendar.setTimeInMillis(to.toEpochMilli());
+
+            logger.debug("Fetching {} historical data from {} to {} for {}", interval, fromCalendar.getTime(), toCalendar.getTime(), symbol);
+            List<HistoricalQuote> historicalQuotes = stock.getHistory(fromCalendar, toCalendar, interval);
+            logger.debug("Received {} historical data points for {}", historicalQuotes != null ? historicalQuotes.size() : 0, symbol);
+            return BarSeries.fromHistoricalQuotes(symbol, historicalQuotes);
+        });
+    }
+}
@@ -0,0 +1,359 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.exception.YahooFinanceException;
+import com.backtestingbuddy.ingestionengine.exception.YahooRateLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide scheduler for every call to Yahoo Finance.
+ * <p>
+ * Requests are queued and dispatched under two limits: a token bucket enforcing the configured global
+ * request rate, and an adaptive concurrency limit that grows additively while calls succeed and is halved
+ * when Yahoo answers with HTTP 429 (AIMD). A 429 also pauses dispatching for all callers for a jittered,
+ * exponentially growing delay, and the rejected request is re-queued on a timer rather than by sleeping on
+ * the calling thread. Callers receive a {@link CompletableFuture} and never block inside the scheduler.
+ */
+@Service
+public class YahooRequestScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(YahooRequestScheduler.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${yahoo.finance.rate.requests-per-second:5}")
+    private double requestsPerSecond;
+
+    @Value("${yahoo.finance.rate.burst:10}")
+    private int burst;
+
+    @Value("${yahoo.finance.concurrency.initial:4}")
+    private int initialConcurrency;
+
+    @Value("${yahoo.finance.concurrency.min:1}")
+    private int minConcurrency;
+
+    @Value("${yahoo.finance.concurrency.max:32}")
+    private int maxConcurrency;
+
+    @Value("${yahoo.finance.retry.max-attempts:3}") // Default to 3 retries
+    private int maxRetries;
+
+    @Value("${yahoo.finance.retry.delay-ms:2000}") // Base backoff, doubled per attempt
+    private long retryDelayMs;
+
+    @Value("${yahoo.finance.retry.max-delay-ms:60000}")
+    private long maxRetryDelayMs;
+
+    private final ArrayDeque<Task<?>> queue = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos;
+    private double concurrencyLimit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+    private boolean dispatchScheduled;
+    private boolean shutdown;
+
+    private ExecutorService workers;
+    private ScheduledExecutorService timer;
+
+    private Counter rateLimitedCounter;
+    private Counter retryCounter;
+    private Timer queueWait;
+    private Timer successLatency;
+    private Timer rateLimitedLatency;
+    private Timer errorLatency;
+    // Retry warnings come in storms when Yahoo starts limiting; the counters above have the totals
+    private final LogSampler retryLogSampler = new LogSampler(5, 10_000);
+
+    @PostConstruct
+    public void start() {
+        tokens = burst;
+        lastRefillNanos = System.nanoTime();
+        concurrencyLimit = Math.max(minConcurrency, Math.min(initialConcurrency, maxConcurrency));
+        workers = Executors.newFixedThreadPool(maxConcurrency, IngestionPipeline.namedThreads("yahoo-request"));
+        timer = Executors.newSingleThreadScheduledExecutor(IngestionPipeline.namedThreads("yahoo-scheduler"));
+
+        rateLimitedCounter = Counter.builder("yahoo.requests.rate.limited").register(meterRegistry);
+        retryCounter = Counter.builder("yahoo.requests.retries").register(meterRegistry);
+        queueWait = Timer.builder("yahoo.requests.queue.wait").register(meterRegistry);
+        successLatency = requestLatency("success");
+        rateLimitedLatency = requestLatency("rate_limited");
+        errorLatency = requestLatency("error");
+        Gauge.builder("yahoo.requests.concurrency.limit", this, YahooRequestScheduler::getConcurrencyLimit).register(meterRegistry);
+        Gauge.builder("yahoo.requests.in.flight", this, YahooRequestScheduler::getInFlight).register(meterRegistry);
+        Gauge.builder("yahoo.requests.queued", this, YahooRequestScheduler::getQueued).register(meterRegistry);
+
+        logger.info("Yahoo request scheduler started ({} req/s, burst {}, concurrency {} in [{}, {}])",
+                requestsPerSecond, burst, concurrencyLimit, minConcurrency, maxConcurrency);
+    }
+
+    @PreDestroy
+    public void stop() {
+        List<Task<?>> abandoned;
+        synchronized (this) {
+            shutdown = true;
+            abandoned = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (Task<?> task : abandoned) {
+            task.result.completeExceptionally(new YahooFinanceException("Scheduler shut down before " + task.description + " was sent"));
+        }
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Schedules a blocking call; it runs on the scheduler's worker pool once rate and concurrency allow.
+     */
+    public <T> CompletableFuture<T> submit(String description, Callable<T> call) {
+        return submitAsync(description, () -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, workers));
+    }
+
+    /**
+     * Schedules a non-blocking call; {@code call} is invoked once rate and concurrency allow and the
+     * returned future counts as in flight until it completes.
+     */
+    public <T> CompletableFuture<T> submitAsync(String description, Supplier<CompletableFuture<T>> call) {
+        Task<T> task = new Task<>(description, call);
+        synchronized (this) {
+            if (shutdown) {
+                task.result.completeExceptionally(new YahooFinanceException("Scheduler is shut down"));
+                return task.result;
+            }
+            queue.addLast(task);
+        }
+        dispatch();
+        return task.result;
+    }
+
+    /**
+     * Changes the global request rate, e.g. when the budget is shared between several instances.
+     */
+    public void setRequestsPerSecond(double rate) {
+        synchronized (this) {
+            refill(System.nanoTime());
+            requestsPerSecond = rate;
+        }
+        dispatch();
+    }
+
+    public synchronized double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public synchronized double getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    private void dispatch() {
+        List<Task<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (!queue.isEmpty() && !shutdown) {
+                if (now < pausedUntilNanos) {
+                    scheduleDispatch(pausedUntilNanos - now);
+                    break;
+                }
+                if (inFlight >= (int) concurrencyLimit) {
+                    // A completing request triggers the next dispatch
+                    break;
+                }
+                refill(now);
+                if (tokens < 1.0) {
+                    scheduleDispatch((long) ((1.0 - tokens) / requestsPerSecond * 1e9));
+                    break;
+                }
+                tokens -= 1.0;
+                inFlight++;
+                ready.add(queue.pollFirst());
+            }
+        }
+        for (Task<?> task : ready) {
+            start(task);
+        }
+    }
+
+    private Timer requestLatency(String outcome) {
+        return Timer.builder("yahoo.requests.latency")
+                .description("Latency of single upstream attempts, excluding queueing and backoff")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private <T> void start(Task<T> task) {
+        task.attempts++;
+        task.startedNanos = System.nanoTime();
+        queueWait.record(task.startedNanos - task.queuedNanos, TimeUnit.NANOSECONDS);
+        CompletableFuture<T> attempt;
+        try {
+            attempt = task.call.get();
+        } catch (Exception e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        attempt.whenComplete((value, error) -> onComplete(task, value, error));
+    }
+
+    private <T> void onComplete(Task<T> task, T value, Throwable error) {
+        Throwable cause = unwrap(error);
+        boolean rateLimited = cause != null && isRateLimited(cause);
+        Timer latency = cause == null ? successLatency : rateLimited ? rateLimitedLatency : errorLatency;
+        latency.record(System.nanoTime() - task.startedNanos, TimeUnit.NANOSECONDS);
+        long retryDelayNanos = 0;
+        synchronized (this) {
+            inFlight--;
+            long now = System.nanoTime();
+            if (cause == null) {
+                // Additive increase: roughly +1 per window of concurrencyLimit successful requests
+                concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+            } else if (rateLimited) {
+                retryDelayNanos = backoffNanos(task.attempts);
+                // Multiplicative decrease, at most once per backoff window so a burst of 429s counts once
+                if (now - lastDecreaseNanos > TimeUnit.MILLISECONDS.toNanos(retryDelayMs)) {
+                    concurrencyLimit = Math.max(minConcurrency, concurrencyLimit / 2);
+                    lastDecreaseNanos = now;
+                }
+                pausedUntilNanos = Math.max(pausedUntilNanos, now + retryDelayNanos);
+            }
+        }
+
+        if (cause == null) {
+            task.result.complete(value);
+        } else if (rateLimited && task.attempts < maxRetries) {
+            rateLimitedCounter.increment();
+            retryCounter.increment();
+            long suppressed = retryLogSampler.sample();
+            if (suppressed >= 0) {
+                logger.warn("Rate limit exceeded for {} (attempt {}/{}), retrying after {}ms ({} similar messages suppressed)",
+                        task.description, task.attempts, maxRetries, TimeUnit.NANOSECONDS.toMillis(retryDelayNanos), suppressed);
+            }
+            timer.schedule(() -> requeue(task), retryDelayNanos, TimeUnit.NANOSECONDS);
+        } else if (rateLimited) {
+            rateLimitedCounter.increment();
+            task.result.completeExceptionally(new YahooFinanceException(
+                    "Failed to fetch " + task.description + " after " + maxRetries + " retries due to rate limit.", cause));
+        } else {
+            task.result.completeExceptionally(cause);
+        }
+        dispatch();
+    }
+
+    private void requeue(Task<?> task) {
+        synchronized (this) {
+            if (shutdown) {
+                task.result.completeExceptionally(new YahooFinanceException("Scheduler shut down before retrying " + task.description));
+                return;
+            }
+            // Retries go to the front so a request that already waited is not starved by new arrivals
+            task.queuedNanos = System.nanoTime();
+            queue.addFirst(task);
+        }
+        dispatch();
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * requestsPerSecond);
+        lastRefillNanos = now;
+    }
+
+    private void scheduleDispatch(long delayNanos) {
+        if (dispatchScheduled) {
+            return;
+        }
+        dispatchScheduled = true;
+        timer.schedule(() -> {
+            synchronized (this) {
+                dispatchScheduled = false;
+            }
+            dispatch();
+        }, Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the capped delay is fixed, the other half random,
+     * so concurrent callers that were limited together do not retry together.
+     */
+    private long backoffNanos(int attempt) {
+        long exponential = retryDelayMs << Math.min(attempt - 1, 20);
+        long capped = Math.min(maxRetryDelayMs, exponential);
+        long half = capped / 2;
+        long jittered = half + ThreadLocalRandom.current().nextLong(half + 1);
+        return TimeUnit.MILLISECONDS.toNanos(jittered);
+    }
+
+    /**
+     * Whether a failure was Yahoo rejecting the request with HTTP 429.
+     */
+    public static boolean isRateLimited(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof YahooRateLimitException) {
+                return true;
+            }
+            if (t.getMessage() != null && t.getMessage().contains("HTTP response code: 429")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static final class Task<T> {
+        private final String description;
+        private final Supplier<CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int attempts;
+        private long queuedNanos = System.nanoTime();
+        private long startedNanos;
+
+        private Task(String description, Supplier<CompletableFuture<T>> call) {
+            this.description = description;
+            this.call = call;
+        }
+    }
+}
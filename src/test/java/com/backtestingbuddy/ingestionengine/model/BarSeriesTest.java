@@ -0,0 +1,49 @@
+package com.backtestingbuddy.ingestionengine.model;
+
+import org.junit.jupiter.api.Test;
+import yahoofinance.histquotes.HistoricalQuote;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BarSeriesTest {
+
+  @Test
+  void convertsHistoricalQuotesToScaledLongs() {
+    Calendar date = Calendar.getInstance();
+    date.setTimeInMillis(1_700_000_000_000L);
+    List<HistoricalQuote> quotes = Arrays.asList(
+        new HistoricalQuote("AAPL", date, new BigDecimal("189.5"), new BigDecimal("188.123456789"),
+            new BigDecimal("190.25"), new BigDecimal("189.9"), null, 123L),
+        new HistoricalQuote("AAPL", null, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, 1L));
+
+    BarSeries series = BarSeries.fromHistoricalQuotes("AAPL", quotes);
+
+    assertEquals(1, series.size());
+    assertEquals(1_700_000_000_000L, series.getEpochMillis(0));
+    assertEquals(18_950_000_000L, series.getOpen(0));
+    assertEquals(18_812_345_679L, series.getLow(0));
+    assertEquals(19_025_000_000L, series.getHigh(0));
+    assertEquals(0L, series.getAdjClose(0));
+    assertEquals(123L, series.getVolume(0));
+    assertEquals(new BigDecimal("189.90000000"), BarSeries.toBigDecimal(series.getClose(0)));
+  }
+
+  @Test
+  void growsAndTrimsBackingArrays() {
+    BarSeries series = new BarSeries("MSFT", 2);
+    for (int i = 0; i < 100; i++) {
+      series.add(i, i, i, i, i, i, i);
+    }
+    series.trimToSize();
+
+    assertEquals(100, series.size());
+    assertEquals(0L, series.getFirstEpochMillis());
+    assertEquals(99L, series.getLastEpochMillis());
+    assertEquals(7L * (16 + 8 * 100), series.estimatedHeapBytes());
+  }
+}
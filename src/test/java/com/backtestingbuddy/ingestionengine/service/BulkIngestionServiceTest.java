@@ -0,0 +1,179 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.dto.BulkIngestionResult;
+import com.backtestingbuddy.ingestionengine.dto.SymbolIngestionResult;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import yahoofinance.Stock;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BulkIngestionServiceTest {
+
+  private StubCoordinator coordinator;
+  private StubYahooFinanceService yahoo;
+  private StubClickHouseService clickHouse;
+  private BulkIngestionService service;
+
+  @BeforeEach
+  void setUp() {
+    coordinator = new StubCoordinator();
+    yahoo = new StubYahooFinanceService();
+    clickHouse = new StubClickHouseService();
+    service = new BulkIngestionService();
+    ReflectionTestUtils.setField(service, "yahooFinanceService", yahoo);
+    ReflectionTestUtils.setField(service, "clickHouseService", clickHouse);
+    ReflectionTestUtils.setField(service, "clusterCoordinator", coordinator);
+    ReflectionTestUtils.setField(service, "fetchConcurrency", 2);
+    ReflectionTestUtils.setField(service, "persistConcurrency", 2);
+    ReflectionTestUtils.setField(service, "maxInFlight", 4);
+    service.initializePipeline();
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.shutdownPipeline();
+  }
+
+  @Test
+  void ingestsOnlyOwnedSymbolsAndReportsTheRest() {
+    coordinator.owned.addAll(List.of("AAPL", "MSFT"));
+
+    BulkIngestionResult result = service.ingest(List.of("aapl", "GOOG", "MSFT", "AMZN"), false);
+
+    assertEquals(2, result.getTotalSymbols());
+    assertEquals(Set.of("AAPL", "MSFT"), Set.copyOf(yahoo.fetched));
+    assertEquals(List.of("GOOG", "AMZN"), result.getDelegatedSymbols());
+  }
+
+  @Test
+  void takesOverSymbolsReassignedDuringTheRun() {
+    coordinator.owned.addAll(List.of("AAPL", "MSFT"));
+    // The peer owning GOOG and AMZN dies while this node fetches AAPL
+    yahoo.onFetch = symbol -> {
+      if (symbol.equals("AAPL")) {
+        coordinator.owned.addAll(List.of("GOOG", "AMZN"));
+        coordinator.membershipVersion++;
+      }
+    };
+
+    BulkIngestionResult result = service.ingest(List.of("AAPL", "GOOG", "MSFT", "AMZN", "TSLA"), false);
+
+    assertEquals(4, result.getTotalSymbols());
+    List<String> fetched = new ArrayList<>(yahoo.fetched);
+    Collections.sort(fetched);
+    // Every symbol is fetched once, the reassigned ones after the original share
+    assertEquals(List.of("AAPL", "AMZN", "GOOG", "MSFT"), fetched);
+    assertEquals(List.of("TSLA"), result.getDelegatedSymbols());
+  }
+
+  @Test
+  void runsAsyncIngestionOffTheCallingThread() {
+    coordinator.owned.addAll(List.of("AAPL", "MSFT"));
+    Thread caller = Thread.currentThread();
+    List<Thread> fetchers = Collections.synchronizedList(new ArrayList<>());
+    yahoo.onFetch = symbol -> fetchers.add(Thread.currentThread());
+
+    BulkIngestionResult result = service.ingestAsync(List.of("AAPL", "MSFT", "GOOG"), false).join();
+
+    assertEquals(2, result.getTotalSymbols());
+    assertEquals(List.of("GOOG"), result.getDelegatedSymbols());
+    assertFalse(fetchers.contains(caller));
+  }
+
+  @Test
+  void storesHistoryWhenOnlyTheQuoteFails() {
+    coordinator.owned.addAll(List.of("AAPL", "MSFT"));
+    yahoo.barsPerSymbol = 3;
+    yahoo.failingQuotes.add("AAPL");
+
+    BulkIngestionResult result = service.ingest(List.of("AAPL", "MSFT"), false);
+
+    SymbolIngestionResult aapl = result.getResults().get(0);
+    assertEquals(SymbolIngestionResult.Status.SUCCESS, aapl.getStatus());
+    assertEquals(3, aapl.getHistoricalRecords());
+    assertEquals("quote unavailable", aapl.getQuoteError());
+    assertNull(result.getResults().get(1).getQuoteError());
+    assertEquals(Set.of("AAPL", "MSFT"), Set.copyOf(clickHouse.savedHistory));
+  }
+
+  private static final class StubCoordinator extends ClusterCoordinator {
+    private final Set<String> owned = ConcurrentHashMap.newKeySet();
+    private volatile long membershipVersion;
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    @Override
+    public String getNodeId() {
+      return "node-a";
+    }
+
+    @Override
+    public List<String> getLiveNodes() {
+      return List.of("node-a", "node-b");
+    }
+
+    @Override
+    public long getMembershipVersion() {
+      return membershipVersion;
+    }
+
+    @Override
+    public boolean owns(String symbol) {
+      return owned.contains(symbol);
+    }
+  }
+
+  private static final class StubYahooFinanceService extends YahooFinanceService {
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failingQuotes = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<String> onFetch = symbol -> { };
+    private volatile int barsPerSymbol;
+
+    @Override
+    public CompletableFuture<Stock> getStockQuoteAsync(String securityName) {
+      if (failingQuotes.contains(securityName)) {
+        return CompletableFuture.failedFuture(new IllegalStateException("quote unavailable"));
+      }
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<BarSeries> getHistoricalBarsSinceAsync(String securityName, Instant latestStoredDate) {
+      fetched.add(securityName);
+      onFetch.accept(securityName);
+      BarSeries bars = new BarSeries(securityName);
+      for (int i = 0; i < barsPerSymbol; i++) {
+        bars.add(i * 86_400_000L, 100, 110, 90, 105, 105, 1_000);
+      }
+      return CompletableFuture.completedFuture(bars);
+    }
+  }
+
+  private static final class StubClickHouseService extends ClickHouseService {
+    private final List<String> savedHistory = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public CompletableFuture<Void> saveHistoricalBarsAsync(BarSeries bars) {
+      savedHistory.add(bars.getSymbol());
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickHouseBarExporterTest {
+
+  @Test
+  void encodesDocumentedHeader() {
+    ByteBuffer header = ByteBuffer.wrap(ClickHouseBarExporter.encodeHeader(List.of("AAPL", "BRK-B"))).order(ByteOrder.LITTLE_ENDIAN);
+
+    assertEquals('B', header.get());
+    assertEquals('B', header.get());
+    assertEquals('A', header.get());
+    assertEquals('R', header.get());
+    assertEquals(1, header.get());
+    assertEquals(8, header.get());
+    assertEquals(54, header.getShort());
+    assertEquals(2, header.getShort());
+    assertEquals(4, header.get());
+    header.position(header.position() + 4);
+    assertEquals(5, header.get());
+    header.position(header.position() + 5);
+    assertEquals(0, header.remaining());
+  }
+
+  @Test
+  void rejectsSymbolsThatCannotBeInlined() {
+    assertThrows(IllegalArgumentException.class, () -> ClickHouseBarExporter.validateSymbols(List.of("AAPL", "X') OR 1=1 --")));
+    assertThrows(IllegalArgumentException.class, () -> ClickHouseBarExporter.validateSymbols(List.of()));
+
+    String query = ClickHouseBarExporter.buildQuery(List.of("AAPL", "^GSPC"), Instant.ofEpochSecond(0), Instant.ofEpochSecond(86400));
+    assertTrue(query.contains("symbol IN ('AAPL', '^GSPC')"));
+    assertTrue(query.contains("date < toDateTime(86400)"));
+  }
+}
@@ -0,0 +1,97 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickHouseServiceTest {
+
+  private static final Map<String, Instant> STORED = Map.of(
+      "AAPL", Instant.parse("2024-03-14T13:30:00Z"),
+      "MSFT", Instant.parse("2024-03-13T13:30:00Z"),
+      "TSLA", Instant.parse("2024-03-12T13:30:00Z"));
+
+  private ClickHouseService service(JdbcTemplate jdbcTemplate, int batchSize) {
+    ClickHouseService service = new ClickHouseService();
+    ReflectionTestUtils.setField(service, "clickHouseJdbcTemplate", jdbcTemplate);
+    ReflectionTestUtils.setField(service, "highWaterMarkBatchSize", batchSize);
+    return service;
+  }
+
+  @Test
+  void looksUpLatestDatesInBatches() {
+    StubJdbcTemplate jdbcTemplate = new StubJdbcTemplate();
+
+    Map<String, Instant> latest = service(jdbcTemplate, 2).getLatestHistoricalDates(List.of("AAPL", "GOOG", "MSFT", "AMZN", "TSLA"));
+
+    assertEquals(STORED, latest);
+    assertFalse(latest.containsKey("GOOG"));
+    // One grouped query per batch of at most two symbols
+    assertEquals(List.of(List.of("AAPL", "GOOG"), List.of("MSFT", "AMZN"), List.of("TSLA")), jdbcTemplate.batches);
+    assertTrue(jdbcTemplate.sql.get(0).contains("symbol IN (?, ?)"));
+    assertTrue(jdbcTemplate.sql.get(2).contains("symbol IN (?)"));
+  }
+
+  @Test
+  void propagatesLookupFailures() {
+    StubJdbcTemplate jdbcTemplate = new StubJdbcTemplate();
+    jdbcTemplate.failure = new IllegalStateException("ClickHouse unavailable");
+
+    IllegalStateException thrown = assertThrows(IllegalStateException.class,
+        () -> service(jdbcTemplate, 2).getLatestHistoricalDates(List.of("AAPL", "MSFT")));
+    assertSame(jdbcTemplate.failure, thrown);
+  }
+
+  /**
+   * Answers the high-water mark query from {@link #STORED} and records the batches it was asked for.
+   */
+  private static final class StubJdbcTemplate extends JdbcTemplate {
+    private final List<String> sql = new ArrayList<>();
+    private final List<List<Object>> batches = new ArrayList<>();
+    private RuntimeException failure;
+
+    @Override
+    public void query(String sql, RowCallbackHandler handler, Object... args) {
+      this.sql.add(sql);
+      batches.add(List.of(args));
+      if (failure != null) {
+        throw failure;
+      }
+      for (Object symbol : args) {
+        Instant latest = STORED.get(symbol);
+        if (latest != null) {
+          try {
+            handler.processRow(row((String) symbol, latest));
+          } catch (SQLException e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      }
+    }
+
+    private static ResultSet row(String symbol, Instant latest) {
+      return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+          (proxy, method, methodArgs) -> switch (method.getName()) {
+            case "getString" -> symbol;
+            case "getTimestamp" -> Timestamp.from(latest);
+            default -> throw new UnsupportedOperationException(method.getName());
+          });
+    }
+  }
+}
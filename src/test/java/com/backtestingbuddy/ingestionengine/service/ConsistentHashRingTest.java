@@ -0,0 +1,48 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+  private static final int SYMBOLS = 20_000;
+
+  @Test
+  void spreadsSymbolsEvenlyOverNodes() {
+    ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < SYMBOLS; i++) {
+      counts.merge(ring.ownerOf("SYM" + i), 1, Integer::sum);
+    }
+
+    assertEquals(4, counts.size());
+    for (int count : counts.values()) {
+      assertTrue(count > SYMBOLS / 4 * 0.8 && count < SYMBOLS / 4 * 1.2, "unbalanced share: " + counts);
+    }
+  }
+
+  @Test
+  void onlyMovesTheSymbolsOfARemovedNode() {
+    ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+    ConsistentHashRing after = new ConsistentHashRing(List.of("d", "b", "a"), 128);
+
+    for (int i = 0; i < SYMBOLS; i++) {
+      String symbol = "SYM" + i;
+      if (!"c".equals(before.ownerOf(symbol))) {
+        assertEquals(before.ownerOf(symbol), after.ownerOf(symbol), symbol);
+      }
+    }
+  }
+
+  @Test
+  void emptyRingHasNoOwner() {
+    assertNull(new ConsistentHashRing(List.of(), 16).ownerOf("AAPL"));
+  }
+}
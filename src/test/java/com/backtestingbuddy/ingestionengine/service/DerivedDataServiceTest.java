@@ -0,0 +1,200 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.model.DerivedSeries;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DerivedDataServiceTest {
+
+  private static final long DAY = 86_400_000L;
+  private static final List<String> SYMBOLS = List.of("AAPL", "MSFT", "GOOG", "AMZN", "TSLA", "NVDA");
+
+  private StubClickHouseService clickHouse;
+  private StubWriter writer;
+  private DerivedDataService service;
+
+  @BeforeEach
+  void setUp() {
+    clickHouse = new StubClickHouseService();
+    writer = new StubWriter();
+    service = new DerivedDataService();
+    ReflectionTestUtils.setField(service, "clickHouseService", clickHouse);
+    ReflectionTestUtils.setField(service, "rowBinaryWriter", writer);
+    ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(service, "enabled", true);
+    ReflectionTestUtils.setField(service, "smaPeriod", 3);
+    ReflectionTestUtils.setField(service, "emaPeriod", 3);
+    ReflectionTestUtils.setField(service, "atrPeriod", 2);
+    ReflectionTestUtils.setField(service, "volatilityPeriod", 2);
+    // Flushed by the tests, not the schedule
+    ReflectionTestUtils.setField(service, "flushIntervalMs", 3_600_000L);
+    ReflectionTestUtils.setField(service, "parallelism", 2);
+    service.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.stop();
+  }
+
+  @Test
+  void restoresColdSymbolsWithOneGroupedReadPerFlush() {
+    for (String symbol : SYMBOLS) {
+      service.onHistoricalDataWritten(new HistoricalDataWrittenEvent(bars(symbol, 0, 5)));
+    }
+    service.processPending();
+
+    assertEquals(List.of(SYMBOLS.size()), clickHouse.latestLookups);
+    assertEquals(List.of(SYMBOLS.size()), clickHouse.historyLookups);
+    assertEquals(List.of(SYMBOLS.size()), clickHouse.barLookups);
+    assertEquals(SYMBOLS.size(), writer.written.size());
+
+    // The next bars continue from the states kept in memory without reading anything
+    for (String symbol : SYMBOLS) {
+      service.onHistoricalDataWritten(new HistoricalDataWrittenEvent(bars(symbol, 5, 2)));
+    }
+    service.processPending();
+
+    assertEquals(1, clickHouse.latestLookups.size());
+    assertEquals(1, clickHouse.historyLookups.size());
+    assertEquals(1, clickHouse.barLookups.size());
+    assertEquals(2 * SYMBOLS.size(), writer.written.size());
+    DerivedSeries continued = writer.written.get(writer.written.size() - 1);
+    assertEquals(2, continued.size());
+    assertFalse(Double.isNaN(continued.sma()[0]));
+  }
+
+  @Test
+  void requeuesColdSymbolsWhenTheStoredStateCannotBeRead() {
+    clickHouse.failLookups = true;
+    service.onHistoricalDataWritten(new HistoricalDataWrittenEvent(bars("AAPL", 0, 5)));
+    service.processPending();
+
+    assertTrue(writer.written.isEmpty());
+
+    clickHouse.failLookups = false;
+    service.processPending();
+
+    assertEquals(1, writer.written.size());
+    assertEquals(5, writer.written.get(0).size());
+    assertEquals(2, clickHouse.latestLookups.size());
+  }
+
+  @Test
+  void mergesSortedSeriesPreferringLaterBars() {
+    BarSeries earlier = bars("AAPL", 0, 4);
+    BarSeries later = new BarSeries("AAPL");
+    later.add(2 * DAY, 7, 7, 7, 7, 7, 7);
+    later.add(6 * DAY, 8, 8, 8, 8, 8, 8);
+
+    BarSeries merged = DerivedDataService.mergeBars(earlier, later);
+
+    assertEquals(List.of(0L, DAY, 2 * DAY, 3 * DAY, 6 * DAY), times(merged));
+    assertEquals(7, merged.getClose(2));
+    assertEquals(8, merged.getClose(4));
+  }
+
+  @Test
+  void sortsUnsortedSeriesKeepingTheLastBarPerTime() {
+    BarSeries bars = new BarSeries("AAPL");
+    bars.add(3 * DAY, 1, 1, 1, 1, 1, 1);
+    bars.add(DAY, 2, 2, 2, 2, 2, 2);
+    bars.add(2 * DAY, 3, 3, 3, 3, 3, 3);
+    bars.add(DAY, 4, 4, 4, 4, 4, 4);
+
+    BarSeries sorted = DerivedDataService.sorted(bars);
+
+    assertEquals(List.of(DAY, 2 * DAY, 3 * DAY), times(sorted));
+    assertEquals(4, sorted.getClose(0));
+    BarSeries alreadySorted = bars("AAPL", 0, 3);
+    assertSame(alreadySorted, DerivedDataService.sorted(alreadySorted));
+  }
+
+  private static List<Long> times(BarSeries bars) {
+    List<Long> times = new ArrayList<>();
+    for (int i = 0; i < bars.size(); i++) {
+      times.add(bars.getEpochMillis(i));
+    }
+    return times;
+  }
+
+  private static BarSeries bars(String symbol, int firstDay, int count) {
+    BarSeries bars = new BarSeries(symbol, count);
+    for (int day = firstDay; day < firstDay + count; day++) {
+      long close = BarSeries.toScaled(BigDecimal.valueOf(100 + day));
+      bars.add(day * DAY, close, close + 1, close - 1, close, close, 1_000);
+    }
+    return bars;
+  }
+
+  /**
+   * Stands in for a table without derived rows or earlier bars, counting the symbols per grouped read.
+   */
+  private static final class StubClickHouseService extends ClickHouseService {
+    private final List<Integer> latestLookups = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> historyLookups = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> barLookups = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean failLookups;
+
+    @Override
+    public Map<String, Instant> getLatestHistoricalDates(Collection<String> symbols) {
+      latestLookups.add(symbols.size());
+      if (failLookups) {
+        throw new IllegalStateException("ClickHouse unavailable");
+      }
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<String, DerivedSeries> getDerivedHistories(Map<String, Instant> before, int limit) {
+      historyLookups.add(before.size());
+      Map<String, DerivedSeries> histories = new HashMap<>();
+      for (String symbol : before.keySet()) {
+        histories.put(symbol, new DerivedSeries(symbol, 0));
+      }
+      return histories;
+    }
+
+    @Override
+    public Map<String, BarSeries> getHistoricalBars(Map<String, Instant> from, Map<String, Instant> to) {
+      barLookups.add(from.size());
+      Map<String, BarSeries> bars = new HashMap<>();
+      for (String symbol : from.keySet()) {
+        bars.put(symbol, new BarSeries(symbol));
+      }
+      return bars;
+    }
+  }
+
+  private static final class StubWriter extends ClickHouseRowBinaryWriter {
+    private final List<DerivedSeries> written = Collections.synchronizedList(new ArrayList<>());
+
+    private StubWriter() {
+      super(null, null, false);
+    }
+
+    @Override
+    public long insertDerivedData(List<DerivedSeries> seriesList) {
+      written.addAll(seriesList);
+      return 0;
+    }
+  }
+}
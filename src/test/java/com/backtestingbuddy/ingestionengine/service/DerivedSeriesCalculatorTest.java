@@ -0,0 +1,117 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import com.backtestingbuddy.ingestionengine.model.DerivedSeries;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DerivedSeriesCalculatorTest {
+
+  private static final long DAY = 86_400_000L;
+
+  @Test
+  void computesAdjustedPricesAndIndicators() {
+    DerivedSeriesCalculator calculator = new DerivedSeriesCalculator(3, 3, 2, 2);
+    BarSeries bars = new BarSeries("TEST");
+    // Close 10, 11, 12, 13 with adj_close at half the close (a 2:1 split after these bars)
+    for (int i = 0; i < 4; i++) {
+      double close = 10 + i;
+      bars.add(i * DAY, scaled(close), scaled(close + 1), scaled(close - 1), scaled(close), scaled(close / 2), 100);
+    }
+
+    DerivedSeries derived = calculator.compute(bars, calculator.newState());
+
+    assertEquals(4.5, derived.adjLow()[0], 1e-12);
+    assertEquals(6.5, derived.adjClose()[3], 1e-12);
+    assertTrue(Double.isNaN(derived.returns()[0]));
+    assertEquals(0.1, derived.returns()[1], 1e-12);
+    assertTrue(Double.isNaN(derived.sma()[1]));
+    assertEquals(5.5, derived.sma()[2], 1e-12);
+    // EMA with alpha 0.5 seeded at 5: 5.25, 5.625, 6.0625
+    assertTrue(Double.isNaN(derived.ema()[1]));
+    assertEquals(5.625, derived.ema()[2], 1e-12);
+    assertEquals(6.0625, derived.ema()[3], 1e-12);
+    // True ranges 1, 1, 1, 1 (gaps of 0.5 stay inside the range)
+    assertTrue(Double.isNaN(derived.atr()[0]));
+    assertEquals(1.0, derived.atr()[3], 1e-12);
+    assertTrue(Double.isNaN(derived.volatility()[1]));
+    double r1 = 0.1;
+    double r2 = 6.0 / 5.5 - 1;
+    double mean = (r1 + r2) / 2;
+    double expected = Math.sqrt((r1 - mean) * (r1 - mean) + (r2 - mean) * (r2 - mean)) * Math.sqrt(252);
+    assertEquals(expected, derived.volatility()[2], 1e-12);
+  }
+
+  @Test
+  void incrementalAndRestoredComputationsMatchAFullPass() {
+    DerivedSeriesCalculator calculator = new DerivedSeriesCalculator(20, 10, 14, 20);
+    BarSeries all = walk(300);
+
+    DerivedSeries full = calculator.compute(all, calculator.newState());
+
+    DerivedSeriesCalculator.RollingState state = calculator.newState();
+    DerivedSeries head = calculator.compute(slice(all, 0, 200), state);
+    DerivedSeries tail = calculator.compute(slice(all, 200, 300), state);
+    assertMatches(full, 200, tail);
+    assertEquals(all.getEpochMillis(299), state.getLastEpochMillis());
+
+    DerivedSeries stored = lastRows(head, calculator.getWarmUpBars());
+    DerivedSeriesCalculator.RollingState restored = calculator.restore(stored);
+    assertMatches(full, 200, calculator.compute(slice(all, 200, 300), restored));
+  }
+
+  @Test
+  void refusesToRestoreFromTooFewRows() {
+    DerivedSeriesCalculator calculator = new DerivedSeriesCalculator(20, 10, 14, 20);
+    DerivedSeries head = calculator.compute(walk(15), calculator.newState());
+
+    assertNull(calculator.restore(head));
+  }
+
+  private static void assertMatches(DerivedSeries full, int offset, DerivedSeries part) {
+    for (int i = 0; i < part.size(); i++) {
+      assertEquals(full.epochMillis()[offset + i], part.epochMillis()[i]);
+      assertEquals(full.returns()[offset + i], part.returns()[i], 1e-12);
+      assertEquals(full.sma()[offset + i], part.sma()[i], 1e-9);
+      assertEquals(full.ema()[offset + i], part.ema()[i], 1e-9);
+      assertEquals(full.atr()[offset + i], part.atr()[i], 1e-9);
+      assertEquals(full.volatility()[offset + i], part.volatility()[i], 1e-9);
+    }
+  }
+
+  private static BarSeries walk(int bars) {
+    BarSeries series = new BarSeries("WALK");
+    double price = 100;
+    for (int i = 0; i < bars; i++) {
+      price *= 1 + Math.sin(i * 0.7) * 0.02;
+      series.add(i * DAY, scaled(price * 0.99), scaled(price * 1.02), scaled(price * 0.97), scaled(price), scaled(price * 0.9), 1000 + i);
+    }
+    return series;
+  }
+
+  private static BarSeries slice(BarSeries bars, int from, int to) {
+    BarSeries slice = new BarSeries(bars.getSymbol(), to - from);
+    for (int i = from; i < to; i++) {
+      slice.add(bars.getEpochMillis(i), bars.getOpen(i), bars.getHigh(i), bars.getLow(i), bars.getClose(i), bars.getAdjClose(i), bars.getVolume(i));
+    }
+    return slice;
+  }
+
+  private static DerivedSeries lastRows(DerivedSeries derived, int rows) {
+    DerivedSeries last = new DerivedSeries(derived.getSymbol(), rows);
+    int offset = derived.size() - rows;
+    System.arraycopy(derived.epochMillis(), offset, last.epochMillis(), 0, rows);
+    System.arraycopy(derived.adjClose(), offset, last.adjClose(), 0, rows);
+    System.arraycopy(derived.returns(), offset, last.returns(), 0, rows);
+    System.arraycopy(derived.ema(), offset, last.ema(), 0, rows);
+    System.arraycopy(derived.atr(), offset, last.atr(), 0, rows);
+    return last;
+  }
+
+  private static long scaled(double price) {
+    return Math.round(price * BarSeries.PRICE_MULTIPLIER);
+  }
+}
@@ -0,0 +1,121 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestionJournalTest {
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void reportsUnacknowledgedEntriesAfterReopen() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    try (IngestionJournal journal = new IngestionJournal(directory, 4096, 10, new SimpleMeterRegistry())) {
+      long first = journal.append((byte) 1, bytes("first"));
+      long second = journal.append((byte) 2, bytes("second"));
+      journal.append((byte) 1, bytes("third"));
+      journal.ack(second);
+      assertNull(journal.read(second));
+      assertArrayEquals(bytes("first"), journal.read(first).getPayload());
+    }
+
+    try (IngestionJournal reopened = new IngestionJournal(directory, 4096, 10, new SimpleMeterRegistry())) {
+      List<Long> pending = reopened.unacknowledged();
+      assertEquals(List.of(0L, 2L), pending);
+      IngestionJournal.Entry third = reopened.read(2);
+      assertEquals((byte) 1, third.getType());
+      assertArrayEquals(bytes("third"), third.getPayload());
+      // Sequence numbers keep increasing across restarts
+      assertEquals(4L, reopened.append((byte) 1, bytes("fourth")));
+    }
+  }
+
+  @Test
+  void deletesSegmentsOnceAcknowledged() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    try (IngestionJournal journal = new IngestionJournal(directory, 256, 10, new SimpleMeterRegistry())) {
+      long[] sequences = new long[20];
+      for (int i = 0; i < sequences.length; i++) {
+        sequences[i] = journal.append((byte) 1, new byte[64]);
+      }
+      assertTrue(journal.getSegmentCount() > 5);
+      for (long sequence : sequences) {
+        journal.ack(sequence);
+      }
+      assertEquals(0, journal.getUnacknowledgedCount());
+      // Only the active segment and the segments holding acks written after it rolled remain
+      try (Stream<Path> files = Files.list(directory)) {
+        assertEquals((long) journal.getSegmentCount(), files.count());
+      }
+      assertTrue(journal.getSegmentCount() <= 2);
+    }
+  }
+
+  @Test
+  void compactsSegmentsBehindAnEntryThatIsNeverAcknowledged() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    long stuck;
+    try (IngestionJournal journal = new IngestionJournal(directory, 256, 10, new SimpleMeterRegistry())) {
+      stuck = journal.append((byte) 1, bytes("never stored"));
+      for (int i = 0; i < 100; i++) {
+        journal.ack(journal.append((byte) 1, new byte[16]));
+      }
+      // The live entry moves forward instead of pinning every segment written after it
+      assertTrue(journal.getSegmentCount() <= 3, journal.getSegmentCount() + " segments");
+      assertArrayEquals(bytes("never stored"), journal.read(stuck).getPayload());
+    }
+
+    try (IngestionJournal reopened = new IngestionJournal(directory, 256, 10, new SimpleMeterRegistry())) {
+      assertEquals(List.of(stuck), reopened.unacknowledged());
+      assertArrayEquals(bytes("never stored"), reopened.read(stuck).getPayload());
+    }
+  }
+
+  @Test
+  void movesDeadLetteredEntriesOutOfTheJournal() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    try (IngestionJournal journal = new IngestionJournal(directory, 4096, 10, new SimpleMeterRegistry())) {
+      long sequence = journal.append((byte) 2, bytes("poison"));
+
+      assertTrue(journal.deadLetter(sequence));
+      assertFalse(journal.deadLetter(sequence));
+      assertEquals(0, journal.getUnacknowledgedCount());
+      assertArrayEquals(bytes("poison"), Files.readAllBytes(directory.resolve("dead-letter").resolve(String.format("%020d-2.entry", sequence))));
+    }
+  }
+
+  @Test
+  void ignoresCorruptTail() throws Exception {
+    Path directory = Files.createTempDirectory("journal");
+    try (IngestionJournal journal = new IngestionJournal(directory, 4096, 10, new SimpleMeterRegistry())) {
+      journal.append((byte) 1, bytes("intact"));
+      journal.append((byte) 1, bytes("damaged"));
+    }
+    Path segment;
+    try (Stream<Path> files = Files.list(directory)) {
+      segment = files.sorted().findFirst().orElseThrow();
+    }
+    byte[] content = Files.readAllBytes(segment);
+    int damagedPayload = 2 * IngestionJournal.HEADER_BYTES + "intact".length();
+    content[damagedPayload] ^= 0x7F;
+    Files.write(segment, content);
+
+    try (IngestionJournal reopened = new IngestionJournal(directory, 4096, 10, new SimpleMeterRegistry())) {
+      assertEquals(List.of(0L), reopened.unacknowledged());
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.dto.BulkIngestionResult;
+import com.backtestingbuddy.ingestionengine.dto.SymbolIngestionResult;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestionPipelineTest {
+
+  private final ScheduledExecutorService delays = Executors.newScheduledThreadPool(4);
+  private IngestionPipeline pipeline;
+
+  @AfterEach
+  void tearDown() {
+    if (pipeline != null) {
+      pipeline.close();
+    }
+    delays.shutdownNow();
+  }
+
+  @Test
+  void reportsOutcomePerSymbolInInputOrder() {
+    pipeline = new IngestionPipeline(2, 2, 4);
+
+    BulkIngestionResult result = pipeline.run(List.of("AAPL", "EMPTY", "BADFETCH", "THROWS", "BADSAVE"),
+        symbol -> switch (symbol) {
+          case "EMPTY" -> CompletableFuture.completedFuture(new FetchedSymbolData(symbol, null, new BarSeries(symbol)));
+          case "BADFETCH" -> CompletableFuture.failedFuture(new IllegalStateException("fetch failed"));
+          case "THROWS" -> throw new IllegalArgumentException("bad symbol");
+          default -> CompletableFuture.completedFuture(new FetchedSymbolData(symbol, null, bars(symbol, 3)));
+        },
+        data -> data.getSymbol().equals("BADSAVE")
+            ? CompletableFuture.failedFuture(new IllegalStateException("insert failed"))
+            : CompletableFuture.completedFuture(null));
+
+    List<SymbolIngestionResult> results = result.getResults();
+    assertEquals(List.of("AAPL", "EMPTY", "BADFETCH", "THROWS", "BADSAVE"), symbols(results));
+    assertEquals(SymbolIngestionResult.Status.SUCCESS, results.get(0).getStatus());
+    assertEquals(3, results.get(0).getHistoricalRecords());
+    assertEquals(SymbolIngestionResult.Status.NO_DATA, results.get(1).getStatus());
+    assertEquals(SymbolIngestionResult.Status.FAILED, results.get(2).getStatus());
+    assertEquals("fetch failed", results.get(2).getError());
+    assertEquals("bad symbol", results.get(3).getError());
+    assertEquals("insert failed", results.get(4).getError());
+    assertEquals(1, result.getSucceeded());
+    assertEquals(1, result.getNoData());
+    assertEquals(3, result.getFailed());
+    assertEquals(3, result.getHistoricalRecords());
+  }
+
+  @Test
+  void slowPersistStageLimitsSymbolsInFlight() {
+    int maxInFlight = 3;
+    pipeline = new IngestionPipeline(8, 1, maxInFlight);
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxObserved = new AtomicInteger();
+    List<String> symbols = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      symbols.add("SYM" + i);
+    }
+
+    BulkIngestionResult result = pipeline.run(symbols,
+        symbol -> {
+          maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          return CompletableFuture.completedFuture(new FetchedSymbolData(symbol, null, bars(symbol, 1)));
+        },
+        data -> after(10).thenRun(inFlight::decrementAndGet));
+
+    assertEquals(20, result.getSucceeded());
+    assertTrue(maxObserved.get() <= maxInFlight, "fetched " + maxObserved.get() + " symbols ahead of the persist stage");
+  }
+
+  @Test
+  void limitsConcurrentFetches() {
+    pipeline = new IngestionPipeline(2, 4, 16);
+    AtomicInteger fetching = new AtomicInteger();
+    AtomicInteger maxObserved = new AtomicInteger();
+    List<String> symbols = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      symbols.add("SYM" + i);
+    }
+
+    BulkIngestionResult result = pipeline.run(symbols,
+        symbol -> {
+          maxObserved.accumulateAndGet(fetching.incrementAndGet(), Math::max);
+          return after(10).thenApply(ignored -> {
+            fetching.decrementAndGet();
+            return new FetchedSymbolData(symbol, null, bars(symbol, 1));
+          });
+        },
+        data -> CompletableFuture.completedFuture(null));
+
+    assertEquals(12, result.getSucceeded());
+    assertEquals(2, maxObserved.get());
+  }
+
+  private CompletableFuture<Void> after(long delayMs) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    delays.schedule(() -> future.complete(null), delayMs, TimeUnit.MILLISECONDS);
+    return future;
+  }
+
+  private static BarSeries bars(String symbol, int count) {
+    BarSeries bars = new BarSeries(symbol, count);
+    for (int i = 0; i < count; i++) {
+      bars.add(1_700_000_000_000L + i * 86_400_000L, 100, 110, 90, 105, 105, 1_000);
+    }
+    return bars;
+  }
+
+  private static List<String> symbols(List<SymbolIngestionResult> results) {
+    List<String> symbols = new ArrayList<>();
+    for (SymbolIngestionResult result : results) {
+      symbols.add(result.getSymbol());
+    }
+    return symbols;
+  }
+}
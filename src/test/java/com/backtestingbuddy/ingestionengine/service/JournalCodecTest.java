@@ -0,0 +1,56 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalCodecTest {
+
+  @Test
+  void roundTripsBarSeriesCompactly() {
+    BarSeries series = new BarSeries("AAPL");
+    long day = 86_400_000L;
+    for (int i = 0; i < 250; i++) {
+      long close = 18_500_000_000L + i * 1_250_000L;
+      series.add(1_700_000_000_000L + i * day, close - 50_000_000L, close + 90_000_000L, close - 120_000_000L, close, close, 50_000_000L + i * 1_000);
+    }
+
+    byte[] payload = JournalCodec.encodeBarSeries(series);
+    BarSeries decoded = JournalCodec.decodeBarSeries(payload);
+
+    assertEquals("AAPL", decoded.getSymbol());
+    assertEquals(series.size(), decoded.size());
+    for (int i = 0; i < series.size(); i++) {
+      assertEquals(series.getEpochMillis(i), decoded.getEpochMillis(i));
+      assertEquals(series.getOpen(i), decoded.getOpen(i));
+      assertEquals(series.getLow(i), decoded.getLow(i));
+      assertEquals(series.getAdjClose(i), decoded.getAdjClose(i));
+      assertEquals(series.getVolume(i), decoded.getVolume(i));
+    }
+    assertTrue(payload.length < series.size() * 40, "payload too large: " + payload.length + " bytes");
+  }
+
+  @Test
+  void roundTripsStockQuoteRowWithNulls() {
+    Object[] row = {"MSFT", "Microsoft Corporation", "USD", null,
+        new BigDecimal("415.26"), new BigDecimal("415.30"), null, new BigDecimal("410.1"), new BigDecimal("416"),
+        new BigDecimal("309.45"), new BigDecimal("468.35"), 21_000_000L, null, new Timestamp(1_700_000_123_000L)};
+
+    Object[] decoded = JournalCodec.decodeStockQuoteRow(JournalCodec.encodeStockQuoteRow(row));
+
+    assertEquals("MSFT", decoded[0]);
+    assertEquals("Microsoft Corporation", decoded[1]);
+    assertNull(decoded[3]);
+    assertEquals(0, new BigDecimal("415.26").compareTo((BigDecimal) decoded[4]));
+    assertNull(decoded[6]);
+    assertEquals(21_000_000L, decoded[11]);
+    assertNull(decoded[12]);
+    assertEquals(new Timestamp(1_700_000_123_000L), decoded[13]);
+  }
+}
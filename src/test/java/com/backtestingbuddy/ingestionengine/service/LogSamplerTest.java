@@ -0,0 +1,22 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogSamplerTest {
+
+  @Test
+  void dropsMessagesOverThePermitsAndReportsThemWithTheNextOne() throws Exception {
+    LogSampler sampler = new LogSampler(2, 50);
+
+    assertEquals(0, sampler.sample());
+    assertEquals(0, sampler.sample());
+    assertEquals(-1, sampler.sample());
+    assertEquals(-1, sampler.sample());
+
+    Thread.sleep(60);
+    assertEquals(2, sampler.sample());
+    assertEquals(0, sampler.sample());
+  }
+}
@@ -0,0 +1,65 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatchWriterTest {
+
+  @Test
+  void flushesWhenRowLimitIsReached() throws Exception {
+    List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    try (MicroBatchWriter<Integer> writer = new MicroBatchWriter<>("test", batches::add,
+        item -> 1, item -> 8, 3, Long.MAX_VALUE, 60_000, 100, 1_000, new SimpleMeterRegistry())) {
+      CompletableFuture<Void> first = writer.submit(1);
+      writer.submit(2);
+      CompletableFuture<Void> third = writer.submit(3);
+
+      third.get(5, TimeUnit.SECONDS);
+      assertTrue(first.isDone());
+      assertEquals(List.of(List.of(1, 2, 3)), batches);
+    }
+  }
+
+  @Test
+  void flushesPartialBatchAfterMaxDelay() throws Exception {
+    List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    try (MicroBatchWriter<Integer> writer = new MicroBatchWriter<>("test", batches::add,
+        item -> 1, item -> 8, 1_000, Long.MAX_VALUE, 50, 10_000, 1_000, new SimpleMeterRegistry())) {
+      writer.submit(42).get(5, TimeUnit.SECONDS);
+      assertEquals(List.of(List.of(42)), batches);
+    }
+  }
+
+  @Test
+  void drainsBufferedItemsOnClose() {
+    List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    MicroBatchWriter<Integer> writer = new MicroBatchWriter<>("test", batches::add,
+        item -> 1, item -> 8, 1_000, Long.MAX_VALUE, 60_000, 10_000, 1_000, new SimpleMeterRegistry());
+    CompletableFuture<Void> pending = writer.submit(7);
+
+    writer.close(5_000);
+
+    assertTrue(pending.isDone());
+    assertEquals(List.of(List.of(7)), batches);
+    assertTrue(writer.submit(8).isCompletedExceptionally());
+  }
+
+  @Test
+  void failedFlushCompletesFuturesExceptionally() {
+    try (MicroBatchWriter<Integer> writer = new MicroBatchWriter<>("test", items -> {
+          throw new IllegalStateException("insert failed");
+        },
+        item -> 1, item -> 8, 1, Long.MAX_VALUE, 60_000, 10, 1_000, new SimpleMeterRegistry())) {
+      CompletableFuture<Void> future = writer.submit(1);
+      assertTrue(future.handle((ignored, ex) -> ex != null).join());
+    }
+  }
+}
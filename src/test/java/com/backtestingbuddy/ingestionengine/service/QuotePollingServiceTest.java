@@ -0,0 +1,55 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.model.WatchlistEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuotePollingServiceTest {
+
+  @Test
+  void firstDueTimeIsWithinOneIntervalAndStableAcrossRestarts() {
+    long interval = 60_000;
+    long now = 1_700_000_012_345L;
+    long due = QuotePollingService.firstDueMs("AAPL", interval, now);
+
+    assertTrue(due >= now && due < now + interval, "due " + due + " outside [now, now + interval)");
+    // Same phase within the interval regardless of when the service started
+    long later = now + 7 * interval + 1_234;
+    assertEquals(Math.floorMod(due, interval), Math.floorMod(QuotePollingService.firstDueMs("AAPL", interval, later), interval));
+  }
+
+  @Test
+  void symbolsInATierAreSpreadAcrossTheInterval() {
+    long interval = 60_000;
+    long now = 1_700_000_000_000L;
+    // Count how many of 600 symbols land in each of 10 six-second slots
+    int[] slots = new int[10];
+    Set<Long> distinct = new HashSet<>();
+    for (int i = 0; i < 600; i++) {
+      long phase = Math.floorMod(QuotePollingService.firstDueMs("SYM" + i, interval, now), interval);
+      slots[(int) (phase / 6_000)]++;
+      distinct.add(phase);
+    }
+    for (int count : slots) {
+      assertTrue(count > 20 && count < 100, "uneven spread: " + count + " symbols in one slot");
+    }
+    assertTrue(distinct.size() > 550);
+  }
+
+  @Test
+  void storedEntryWithoutTierMatchesTheRegisteredOne() {
+    // The watchlist table stores a missing tier as '' and a missing interval as 0
+    WatchlistEntry registered = new WatchlistEntry("AAPL", null, -1);
+    WatchlistEntry stored = new WatchlistEntry("AAPL", "", 0);
+
+    assertNull(stored.getTier());
+    assertEquals(registered.getTier(), stored.getTier());
+    assertEquals(registered.getIntervalSeconds(), stored.getIntervalSeconds());
+  }
+}
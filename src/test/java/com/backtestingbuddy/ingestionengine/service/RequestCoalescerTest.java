@@ -0,0 +1,79 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+  private static CompletableFuture<Map<String, String>> upperCase(List<String> keys) {
+    Map<String, String> values = new HashMap<>();
+    for (String key : keys) {
+      if (!key.startsWith("missing")) {
+        values.put(key, key.toUpperCase());
+      }
+    }
+    return CompletableFuture.completedFuture(values);
+  }
+
+  @Test
+  void coalescesRequestsWithinWindowIntoOneBatch() throws Exception {
+    List<List<String>> batches = new CopyOnWriteArrayList<>();
+    try (RequestCoalescer<String, String> coalescer = new RequestCoalescer<>("test", keys -> {
+      batches.add(keys);
+      return upperCase(keys);
+    }, 50, 100, new SimpleMeterRegistry())) {
+      CompletableFuture<String> aapl = coalescer.get("aapl");
+      CompletableFuture<String> msft = coalescer.get("msft");
+      CompletableFuture<String> duplicate = coalescer.get("aapl");
+      CompletableFuture<String> missing = coalescer.get("missing");
+
+      assertEquals("AAPL", aapl.get(5, TimeUnit.SECONDS));
+      assertEquals("MSFT", msft.get(5, TimeUnit.SECONDS));
+      assertEquals("AAPL", duplicate.get(5, TimeUnit.SECONDS));
+      assertNull(missing.get(5, TimeUnit.SECONDS));
+      assertEquals(List.of(List.of("aapl", "msft", "missing")), batches);
+    }
+  }
+
+  @Test
+  void sendsFullBatchWithoutWaitingForWindow() throws Exception {
+    List<List<String>> batches = new CopyOnWriteArrayList<>();
+    try (RequestCoalescer<String, String> coalescer = new RequestCoalescer<>("test", keys -> {
+      batches.add(keys);
+      return upperCase(keys);
+    }, 60_000, 2, new SimpleMeterRegistry())) {
+      CompletableFuture<String> first = coalescer.get("a");
+      CompletableFuture<String> second = coalescer.get("b");
+
+      assertEquals("A", first.get(5, TimeUnit.SECONDS));
+      assertEquals("B", second.get(5, TimeUnit.SECONDS));
+      assertEquals(List.of(List.of("a", "b")), batches);
+    }
+  }
+
+  @Test
+  void failedBatchFailsEveryRequest() {
+    try (RequestCoalescer<String, String> coalescer = new RequestCoalescer<>("test",
+        keys -> CompletableFuture.failedFuture(new IllegalStateException("upstream down")), 10, 100, new SimpleMeterRegistry())) {
+      CompletableFuture<String> first = coalescer.get("a");
+      CompletableFuture<String> second = coalescer.get("b");
+
+      ExecutionException error = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+      assertTrue(error.getCause() instanceof IllegalStateException);
+      assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RowBinaryEncoderTest {
+
+  @Test
+  void encodesStringWithVarIntLength() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RowBinaryEncoder encoder = new RowBinaryEncoder(out);
+    encoder.writeString("AAPL");
+    encoder.flush();
+    assertArrayEquals(new byte[]{4, 'A', 'A', 'P', 'L'}, out.toByteArray());
+  }
+
+  @Test
+  void encodesLittleEndianFixedWidthValues() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RowBinaryEncoder encoder = new RowBinaryEncoder(out);
+    encoder.writeDateTime(0x01020304L);
+    encoder.writeInt64(-2L);
+    encoder.flush();
+    assertArrayEquals(new byte[]{
+        4, 3, 2, 1,
+        -2, -1, -1, -1, -1, -1, -1, -1
+    }, out.toByteArray());
+  }
+
+  @Test
+  void encodesDecimal128WithSignExtension() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RowBinaryEncoder encoder = new RowBinaryEncoder(out);
+    encoder.writeDecimal128(-1L);
+    encoder.writeDecimal128(0L);
+    encoder.flush();
+    byte[] bytes = out.toByteArray();
+    assertEquals(32, bytes.length);
+    for (int i = 0; i < 16; i++) {
+      assertEquals((byte) -1, bytes[i]);
+      assertEquals((byte) 0, bytes[16 + i]);
+    }
+  }
+
+  @Test
+  void flushesAcrossSmallBuffer() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RowBinaryEncoder encoder = new RowBinaryEncoder(out, 16);
+    for (int i = 0; i < 10; i++) {
+      encoder.writeString("MSFT");
+      encoder.writeInt64(i);
+    }
+    assertEquals(130, encoder.getBytesWritten());
+    encoder.flush();
+    assertEquals(130, out.size());
+  }
+}
@@ -0,0 +1,125 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for Yahoo's v8 chart API, for tests and benchmarks.
+ * <p>
+ * Serves one synthetic daily bar per day in {@code [period1, period2)} for any symbol, written in small chunks so
+ * clients see the body arrive incrementally. {@code RATELIMITED} answers 429 and {@code MISSING} answers 404
+ * with Yahoo's error body.
+ */
+public class StubYahooChartServer implements AutoCloseable {
+
+  private static final long SECONDS_PER_DAY = 86_400L;
+  // Yahoo stamps daily bars with the exchange open, 09:30 New York
+  private static final long MARKET_OPEN_OFFSET_SECONDS = 14 * 3600 + 30 * 60;
+  private static final int CHUNK_BYTES = 512;
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private final AtomicInteger requests = new AtomicInteger();
+
+  public StubYahooChartServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/v8/finance/chart/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public int getRequestCount() {
+    return requests.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    String symbol = exchange.getRequestURI().getPath().substring("/v8/finance/chart/".length());
+    Map<String, String> query = new HashMap<>();
+    for (String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+      String[] pair = parameter.split("=", 2);
+      query.put(pair[0], pair.length > 1 ? pair[1] : "");
+    }
+    if (symbol.equals("RATELIMITED")) {
+      send(exchange, 429, "Too Many Requests");
+    } else if (symbol.equals("MISSING")) {
+      send(exchange, 404, "{\"chart\":{\"result\":null,\"error\":{\"code\":\"Not Found\",\"description\":\"No data found, symbol may be delisted\"}}}");
+    } else {
+      send(exchange, 200, chartJson(symbol, Long.parseLong(query.get("period1")), Long.parseLong(query.get("period2"))));
+    }
+  }
+
+  /**
+   * A chart response with one bar per day starting at the first day on or after {@code period1}; every fifth
+   * bar has null prices, like Yahoo's placeholder bars.
+   */
+  public static String chartJson(String symbol, long period1, long period2) {
+    long firstDay = Math.floorDiv(period1 + SECONDS_PER_DAY - 1, SECONDS_PER_DAY);
+    long lastDay = Math.floorDiv(period2 - 1, SECONDS_PER_DAY);
+    StringBuilder timestamps = new StringBuilder();
+    StringBuilder open = new StringBuilder();
+    StringBuilder high = new StringBuilder();
+    StringBuilder low = new StringBuilder();
+    StringBuilder close = new StringBuilder();
+    StringBuilder volume = new StringBuilder();
+    StringBuilder adjClose = new StringBuilder();
+    for (long day = firstDay; day <= lastDay; day++) {
+      String separator = day == firstDay ? "" : ",";
+      timestamps.append(separator).append(day * SECONDS_PER_DAY + MARKET_OPEN_OFFSET_SECONDS);
+      if (day % 5 == 4) {
+        for (StringBuilder column : new StringBuilder[] {open, high, low, close, volume, adjClose}) {
+          column.append(separator).append("null");
+        }
+        continue;
+      }
+      long cents = 10_000 + day % 1_000;
+      open.append(separator).append(price(cents));
+      high.append(separator).append(price(cents + 150));
+      low.append(separator).append(price(cents - 150));
+      close.append(separator).append(price(cents + 25));
+      volume.append(separator).append(1_000_000 + day % 10_000);
+      adjClose.append(separator).append(price(cents + 20));
+    }
+    return "{\"chart\":{\"result\":[{\"meta\":{\"currency\":\"USD\",\"symbol\":\"" + symbol + "\",\"gmtoffset\":-14400,"
+        + "\"validRanges\":[\"1d\",\"5d\"]},\"timestamp\":[" + timestamps + "],\"indicators\":{\"quote\":[{"
+        + "\"open\":[" + open + "],\"high\":[" + high + "],\"low\":[" + low + "],\"close\":[" + close + "],"
+        + "\"volume\":[" + volume + "]}],\"adjclose\":[{\"adjclose\":[" + adjClose + "]}]}}],\"error\":null}}";
+  }
+
+  private static String price(long cents) {
+    return cents / 100 + "." + String.format("%02d", cents % 100);
+  }
+
+  private static void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    // Length 0 means chunked transfer encoding
+    exchange.sendResponseHeaders(status, 0);
+    try (OutputStream out = exchange.getResponseBody()) {
+      for (int offset = 0; offset < bytes.length; offset += CHUNK_BYTES) {
+        out.write(bytes, offset, Math.min(CHUNK_BYTES, bytes.length - offset));
+        out.flush();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
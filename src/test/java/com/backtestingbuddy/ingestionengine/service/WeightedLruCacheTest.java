@@ -0,0 +1,42 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeightedLruCacheTest {
+
+  @Test
+  void evictsLeastRecentlyUsedOnceOverWeight() {
+    WeightedLruCache<String, String> cache = new WeightedLruCache<>("test", 10, value -> value.length(), new SimpleMeterRegistry());
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    cache.get("a");
+    cache.put("c", "cccc");
+
+    assertNull(cache.get("b"));
+    assertEquals("aaaa", cache.get("a"));
+    assertEquals("cccc", cache.get("c"));
+    assertEquals(8, cache.getWeight());
+
+    cache.put("huge", "xxxxxxxxxxxx");
+    assertFalse(cache.contains("huge"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  void removesSingleKeyAndItsWeight() {
+    WeightedLruCache<String, String> cache = new WeightedLruCache<>("test", 100, value -> value.length(), new SimpleMeterRegistry());
+    cache.put("AAPL:2024-01", "jan");
+    cache.put("AAPL:2024-02", "february");
+
+    assertTrue(cache.remove("AAPL:2024-02"));
+    assertFalse(cache.remove("AAPL:2024-03"));
+    assertFalse(cache.contains("AAPL:2024-02"));
+    assertEquals(3, cache.getWeight());
+  }
+}
@@ -0,0 +1,87 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.exception.YahooFinanceException;
+import com.backtestingbuddy.ingestionengine.model.BarSeries;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import yahoofinance.histquotes.Interval;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YahooChartHttpProviderTest {
+
+  private static final long DAY_SECONDS = 86_400L;
+
+  private StubYahooChartServer server;
+  private YahooRequestScheduler scheduler;
+  private YahooChartHttpProvider provider;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = new StubYahooChartServer();
+    scheduler = new YahooRequestScheduler();
+    ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(scheduler, "requestsPerSecond", 100.0);
+    ReflectionTestUtils.setField(scheduler, "burst", 10);
+    ReflectionTestUtils.setField(scheduler, "initialConcurrency", 4);
+    ReflectionTestUtils.setField(scheduler, "minConcurrency", 1);
+    ReflectionTestUtils.setField(scheduler, "maxConcurrency", 4);
+    ReflectionTestUtils.setField(scheduler, "maxRetries", 0);
+    ReflectionTestUtils.setField(scheduler, "retryDelayMs", 10L);
+    ReflectionTestUtils.setField(scheduler, "maxRetryDelayMs", 10L);
+    scheduler.start();
+    provider = new YahooChartHttpProvider(scheduler, server.getBaseUrl(), 4, 1000, 5000);
+  }
+
+  @AfterEach
+  void tearDown() {
+    provider.close();
+    scheduler.stop();
+    server.close();
+  }
+
+  @Test
+  void streamsChartResponseIntoBarSeries() throws Exception {
+    long firstDay = 19_000;
+    Instant from = Instant.ofEpochSecond(firstDay * DAY_SECONDS);
+    Instant to = Instant.ofEpochSecond((firstDay + 400) * DAY_SECONDS);
+
+    BarSeries bars = provider.fetchHistoricalBars("AAPL", from, to, Interval.DAILY).get(10, TimeUnit.SECONDS);
+
+    // Every fifth day is a null placeholder bar
+    assertEquals(320, bars.size());
+    assertEquals(firstDay * DAY_SECONDS * 1000, bars.getEpochMillis(0));
+    long cents = 10_000 + firstDay % 1_000;
+    assertEquals(BarSeries.toScaled(BigDecimal.valueOf(cents + 25, 2)), bars.getClose(0));
+    assertEquals(BarSeries.toScaled(BigDecimal.valueOf(cents + 20, 2)), bars.getAdjClose(0));
+    assertEquals(1_000_000 + firstDay % 10_000, bars.getVolume(0));
+    assertEquals(1, server.getRequestCount());
+  }
+
+  @Test
+  void reportsRateLimitsAndYahooErrors() {
+    Instant from = Instant.ofEpochSecond(19_000 * DAY_SECONDS);
+    Instant to = from.plusSeconds(10 * DAY_SECONDS);
+
+    ExecutionException limited = assertThrows(ExecutionException.class,
+        () -> provider.fetchHistoricalBars("RATELIMITED", from, to, Interval.DAILY).get(10, TimeUnit.SECONDS));
+    assertTrue(YahooRequestScheduler.isRateLimited(limited));
+
+    ExecutionException missing = assertThrows(ExecutionException.class,
+        () -> provider.fetchHistoricalBars("MISSING", from, to, Interval.DAILY).get(10, TimeUnit.SECONDS));
+    Throwable cause = YahooRequestScheduler.unwrap(missing);
+    assertInstanceOf(YahooFinanceException.class, cause);
+    assertTrue(cause.getMessage().contains("symbol may be delisted"));
+  }
+}
@@ -0,0 +1,45 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import org.junit.jupiter.api.Test;
+import yahoofinance.histquotes.Interval;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class YahooFinanceServiceTest {
+
+  private static final Instant NOW = Instant.parse("2024-03-15T18:00:00Z");
+
+  @Test
+  void fullFetchStartsAtTheLookback() {
+    assertEquals(Instant.parse("2019-03-15T18:00:00Z"), YahooFinanceService.historyStart(null, NOW, 5, Interval.DAILY, false));
+  }
+
+  @Test
+  void dedupSchemaFetchesTheLatestStoredBarAgain() {
+    // Stored while the session was still open; fetched again so the final bar replaces it
+    Instant latest = Instant.parse("2024-03-15T13:30:00Z");
+    assertEquals(latest, YahooFinanceService.historyStart(latest, NOW, 5, Interval.DAILY, true));
+
+    Instant lastWeek = Instant.parse("2024-03-08T13:30:00Z");
+    assertEquals(lastWeek, YahooFinanceService.historyStart(lastWeek, NOW, 5, Interval.DAILY, true));
+  }
+
+  @Test
+  void legacySchemaStartsOneIntervalAfterTheLatestStoredBar() {
+    Instant lastWeek = Instant.parse("2024-03-08T13:30:00Z");
+    assertEquals(Instant.parse("2024-03-09T13:30:00Z"), YahooFinanceService.historyStart(lastWeek, NOW, 5, Interval.DAILY, false));
+    assertEquals(Instant.parse("2024-03-15T13:30:00Z"), YahooFinanceService.historyStart(lastWeek, NOW, 5, Interval.WEEKLY, false));
+    // Nothing to fetch until the next bar can exist, so the latest one is never inserted twice
+    assertNull(YahooFinanceService.historyStart(Instant.parse("2024-03-15T13:30:00Z"), NOW, 5, Interval.DAILY, false));
+    assertNull(YahooFinanceService.historyStart(Instant.parse("2024-02-20T00:00:00Z"), NOW, 5, Interval.MONTHLY, false));
+  }
+
+  @Test
+  void nothingToFetchWhenTheLatestBarIsNotInThePast() {
+    assertNull(YahooFinanceService.historyStart(NOW, NOW, 5, Interval.DAILY, true));
+    assertNull(YahooFinanceService.historyStart(NOW.plusSeconds(60), NOW, 5, Interval.DAILY, true));
+  }
+}
@@ -0,0 +1,113 @@
+package com.backtestingbuddy.ingestionengine.service;
+
+import com.backtestingbuddy.ingestionengine.exception.YahooFinanceException;
+import com.backtestingbuddy.ingestionengine.exception.YahooRateLimitException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YahooRequestSchedulerTest {
+
+  private YahooRequestScheduler scheduler(double requestsPerSecond, int burst, int initialConcurrency, int maxRetries) {
+    YahooRequestScheduler scheduler = new YahooRequestScheduler();
+    ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(scheduler, "requestsPerSecond", requestsPerSecond);
+    ReflectionTestUtils.setField(scheduler, "burst", burst);
+    ReflectionTestUtils.setField(scheduler, "initialConcurrency", initialConcurrency);
+    ReflectionTestUtils.setField(scheduler, "minConcurrency", 1);
+    ReflectionTestUtils.setField(scheduler, "maxConcurrency", 16);
+    ReflectionTestUtils.setField(scheduler, "maxRetries", maxRetries);
+    ReflectionTestUtils.setField(scheduler, "retryDelayMs", 20L);
+    ReflectionTestUtils.setField(scheduler, "maxRetryDelayMs", 100L);
+    scheduler.start();
+    return scheduler;
+  }
+
+  @Test
+  void enforcesGlobalRateAfterBurst() throws Exception {
+    YahooRequestScheduler scheduler = scheduler(20, 2, 8, 3);
+    try {
+      long start = System.nanoTime();
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        int value = i;
+        futures.add(scheduler.submit("request " + i, () -> value));
+      }
+      for (CompletableFuture<Integer> future : futures) {
+        future.get(5, TimeUnit.SECONDS);
+      }
+      // Two requests use the burst, the remaining four wait for tokens at 20/s
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      assertTrue(elapsedMs >= 150, "finished too fast: " + elapsedMs + "ms");
+    } finally {
+      scheduler.stop();
+    }
+  }
+
+  @Test
+  void retriesRateLimitedCallsAndHalvesConcurrency() throws Exception {
+    YahooRequestScheduler scheduler = scheduler(1_000, 100, 8, 3);
+    try {
+      AtomicInteger attempts = new AtomicInteger();
+      CompletableFuture<String> result = scheduler.submit("quote for AAPL", () -> {
+        if (attempts.incrementAndGet() < 3) {
+          throw new IOException("Server returned HTTP response code: 429 for URL");
+        }
+        return "ok";
+      });
+
+      assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+      assertEquals(3, attempts.get());
+      assertTrue(scheduler.getConcurrencyLimit() < 8, "limit not decreased: " + scheduler.getConcurrencyLimit());
+    } finally {
+      scheduler.stop();
+    }
+  }
+
+  @Test
+  void failsAfterMaxRetries() throws Exception {
+    YahooRequestScheduler scheduler = scheduler(1_000, 100, 4, 2);
+    try {
+      CompletableFuture<String> result = scheduler.submit("quote for MSFT", () -> {
+        throw new YahooRateLimitException("Too many requests");
+      });
+
+      ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+      assertTrue(error.getCause() instanceof YahooFinanceException);
+      assertTrue(error.getCause().getMessage().contains("after 2 retries due to rate limit"));
+    } finally {
+      scheduler.stop();
+    }
+  }
+
+  @Test
+  void growsConcurrencyWhileCallsSucceed() throws Exception {
+    YahooRequestScheduler scheduler = scheduler(10_000, 1_000, 2, 3);
+    try {
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        int value = i;
+        futures.add(scheduler.submit("request " + i, () -> value));
+      }
+      for (CompletableFuture<Integer> future : futures) {
+        future.get(5, TimeUnit.SECONDS);
+      }
+      assertTrue(scheduler.getConcurrencyLimit() > 2, "limit not increased: " + scheduler.getConcurrencyLimit());
+      assertEquals(0, scheduler.getInFlight());
+    } finally {
+      scheduler.stop();
+    }
+  }
+}